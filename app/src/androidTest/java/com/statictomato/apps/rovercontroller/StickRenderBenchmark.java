@@ -0,0 +1,165 @@
+package com.statictomato.apps.rovercontroller;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Frame times of the DualStickView, as laid out in landscape, following two
+ * fingers circling on the sticks, drawn into a software canvas on the device:
+ *
+ * - full: the whole view redrawn with the drawables scaled every frame, as
+ *   before the sprites were cached and the redraw limited to the hats,
+ * - cached: the whole view redrawn by onDraw() from the SpriteCache,
+ * - dirty: only the union of the areas the view invalidated redrawn by
+ *   onDraw(), as the framework merges them.
+ *
+ * Run with ./gradlew connectedAndroidTest, the histograms are logged under the
+ * StickRenderBenchmark tag. Compare runs on the same device only.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StickRenderBenchmark {
+
+    private static final String TAG = "StickRenderBenchmark";
+
+    private static final int WIDTH = 1200;
+    private static final int HEIGHT = 600;
+    private static final int WARMUP_FRAMES = 200;
+    private static final int FRAMES = 2000;
+
+    private static class Host extends ContextWrapper implements DualStickView.DualStickListener {
+        Host(Context base) {
+            super(base);
+        }
+
+        @Override
+        public void onSticksMoved(float leftX, float leftY, float rightX, float rightY, long eventTime) {
+        }
+    }
+
+    @Test
+    public void frameTimes() throws Exception {
+        Context context = new Host(InstrumentationRegistry.getTargetContext());
+        DualStickView view = new DualStickView(context);
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+        final StickTracker left = view.getLeftStick();
+        final StickTracker right = view.getRightStick();
+
+        Drawable base = context.getResources().getDrawable(R.drawable.joystick_base);
+        Drawable hat = context.getResources().getDrawable(R.drawable.joystick_hat);
+        Canvas canvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+
+        LatencyHistogram full = new LatencyHistogram();
+        LatencyHistogram cached = new LatencyHistogram();
+        LatencyHistogram dirty = new LatencyHistogram();
+        long dirtyPixels = 0;
+        final Rect rect = new Rect();
+
+        /* A finger down on each hat */
+        MotionEvent.PointerProperties[] properties = new MotionEvent.PointerProperties[2];
+        MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[2];
+        for (int n = 0; n < 2; ++n) {
+            properties[n] = new MotionEvent.PointerProperties();
+            properties[n].id = n;
+            properties[n].toolType = MotionEvent.TOOL_TYPE_FINGER;
+            coords[n] = new MotionEvent.PointerCoords();
+        }
+        coords[0].x = left.getCenterX();
+        coords[0].y = left.getCenterY();
+        coords[1].x = right.getCenterX();
+        coords[1].y = right.getCenterY();
+        final long downTime = SystemClock.uptimeMillis();
+        touch(view, downTime, downTime, MotionEvent.ACTION_DOWN, 1, properties, coords);
+        touch(view, downTime, downTime, MotionEvent.ACTION_POINTER_DOWN
+                | (1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT), 2, properties, coords);
+        assertTrue(left.isActive() && right.isActive());
+
+        for (int frame = 0; frame < WARMUP_FRAMES + FRAMES; ++frame) {
+            final double angle = frame * 0.05;
+            final float radius = HEIGHT / 3f;
+            /* The fingers circle in opposite directions */
+            coords[0].x = left.getCenterX() + radius * (float) Math.cos(angle);
+            coords[0].y = left.getCenterY() + radius * (float) Math.sin(angle);
+            coords[1].x = right.getCenterX() - radius * (float) Math.cos(angle);
+            coords[1].y = right.getCenterY() + radius * (float) Math.sin(angle);
+            touch(view, downTime, downTime + 8 * (frame + 1), MotionEvent.ACTION_MOVE, 2, properties, coords);
+            final boolean measured = frame >= WARMUP_FRAMES;
+
+            long start = System.nanoTime();
+            drawScaled(canvas, base, hat, left);
+            drawScaled(canvas, base, hat, right);
+            if (measured) {
+                full.record(System.nanoTime() - start);
+            }
+
+            start = System.nanoTime();
+            view.draw(canvas);
+            if (measured) {
+                cached.record(System.nanoTime() - start);
+            }
+
+            rect.set(view.getLeftDirty());
+            rect.union(view.getRightDirty());
+            start = System.nanoTime();
+            canvas.save();
+            canvas.clipRect(rect);
+            view.draw(canvas);
+            canvas.restore();
+            if (measured) {
+                dirty.record(System.nanoTime() - start);
+                dirtyPixels += rect.width() * rect.height();
+            }
+        }
+
+        StringBuilder report = new StringBuilder();
+        report.append("full: ");
+        full.export(report);
+        report.append("\ncached: ");
+        cached.export(report);
+        report.append("\ndirty: ");
+        dirty.export(report);
+        report.append("\ndirty area: ").append(100 * dirtyPixels / ((long) FRAMES * WIDTH * HEIGHT)).append("% of the view");
+        report.append("\nsprites: ");
+        SpriteCache.getInstance().export(report);
+        Log.i(TAG, report.toString());
+
+        assertEquals(FRAMES, dirty.getCount());
+    }
+
+    private static void touch(View view, long downTime, long eventTime, int action, int pointerCount,
+                              MotionEvent.PointerProperties[] properties, MotionEvent.PointerCoords[] coords) {
+        MotionEvent event = MotionEvent.obtain(downTime, eventTime, action, pointerCount, properties, coords,
+                0, 0, 1, 1, 0, 0, InputDevice.SOURCE_TOUCHSCREEN, 0);
+        view.onTouchEvent(event);
+        event.recycle();
+    }
+
+    /* The former onDraw(), the drawables scaled into place on every frame */
+    private static void drawScaled(Canvas canvas, Drawable base, Drawable hat, StickTracker stick) {
+        final float baseRadius = stick.getBaseRadius();
+        base.setBounds((int) (stick.getCenterX() - baseRadius), (int) (stick.getCenterY() - baseRadius),
+                (int) (stick.getCenterX() + baseRadius), (int) (stick.getCenterY() + baseRadius));
+        base.draw(canvas);
+        final float hatRadius = stick.getHatRadius();
+        hat.setBounds((int) (stick.getHatCenterX() - hatRadius), (int) (stick.getHatCenterY() - hatRadius),
+                (int) (stick.getHatCenterX() + hatRadius), (int) (stick.getHatCenterY() + hatRadius));
+        hat.draw(canvas);
+    }
+}
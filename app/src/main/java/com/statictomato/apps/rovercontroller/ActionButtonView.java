@@ -0,0 +1,161 @@
+package com.statictomato.apps.rovercontroller;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * The A, B, X and Y action buttons, tracked by a ButtonPad.
+ *
+ * Every press and every release is reported on its own as soon as the touch
+ * event comes in, several fingers may hold several buttons. The buttons are
+ * sprites from the SpriteCache, and a press or release only invalidates the
+ * button it changed.
+ */
+public class ActionButtonView extends View {
+
+    private static final int[] RELEASED_SPRITES = new int[CommandCodec.BUTTON_COUNT];
+    private static final int[] PRESSED_SPRITES = new int[CommandCodec.BUTTON_COUNT];
+
+    static {
+        RELEASED_SPRITES[CommandCodec.BUTTON_A] = R.drawable.black_button_a;
+        RELEASED_SPRITES[CommandCodec.BUTTON_B] = R.drawable.black_button_b;
+        RELEASED_SPRITES[CommandCodec.BUTTON_X] = R.drawable.black_button_x;
+        RELEASED_SPRITES[CommandCodec.BUTTON_Y] = R.drawable.black_button_y;
+        PRESSED_SPRITES[CommandCodec.BUTTON_A] = R.drawable.black_button_pressed_a;
+        PRESSED_SPRITES[CommandCodec.BUTTON_B] = R.drawable.black_button_pressed_b;
+        PRESSED_SPRITES[CommandCodec.BUTTON_X] = R.drawable.black_button_pressed_x;
+        PRESSED_SPRITES[CommandCodec.BUTTON_Y] = R.drawable.black_button_pressed_y;
+    }
+
+    private ActionButtonListener listener;
+
+    private final Bitmap[] released = new Bitmap[CommandCodec.BUTTON_COUNT];
+    private final Bitmap[] pressed = new Bitmap[CommandCodec.BUTTON_COUNT];
+
+    private final ButtonPad pad = new ButtonPad();
+
+    private final Rect dirty = new Rect();
+
+    public ActionButtonView(Context context) {
+        super(context);
+        init(context);
+    }
+
+    public ActionButtonView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init(context);
+    }
+
+    public ActionButtonView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        init(context);
+    }
+
+    private void init(Context context) {
+        /* Get context */
+        if (context instanceof ActionButtonListener) {
+            listener = (ActionButtonListener) context;
+        } else {
+            throw new RuntimeException(context.toString()
+                    + " must implement ActionButtonListener");
+        }
+    }
+
+    public interface ActionButtonListener {
+        /**
+         * A button was pressed or released.
+         *
+         * @param button    one of the CommandCodec buttons.
+         * @param eventTime time of the touch event, in the SystemClock.uptimeMillis() time base.
+         */
+        void onActionButton(int button, boolean pressed, long eventTime);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        final int previous = pad.getPressed();
+        pad.setGeometry(w/2, h/2, Math.min(w, h));
+        SpriteCache sprites = SpriteCache.getInstance();
+        Resources r = getResources();
+        final int size = (int)(2 * pad.getRadius());
+        for(int button = 0; button < CommandCodec.BUTTON_COUNT; ++button) {
+            released[button] = sprites.get(r, RELEASED_SPRITES[button], size);
+            pressed[button] = sprites.get(r, PRESSED_SPRITES[button], size);
+        }
+        /* Laid out again, the buttons held are let go */
+        reportEdges(previous, SystemClock.uptimeMillis());
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        final float radius = pad.getRadius();
+        for(int button = 0; button < CommandCodec.BUTTON_COUNT; ++button) {
+            final Bitmap sprite = pad.isPressed(button) ? pressed[button] : released[button];
+            if(sprite != null) {
+                canvas.drawBitmap(sprite, pad.getCenterX(button) - radius, pad.getCenterY(button) - radius, null);
+            }
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent motionEvent) {
+        final int previous = pad.getPressed();
+        switch(motionEvent.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+            case MotionEvent.ACTION_POINTER_DOWN: {
+                final int pIndex = motionEvent.getActionIndex();
+                pad.down(motionEvent.getPointerId(pIndex), motionEvent.getX(pIndex), motionEvent.getY(pIndex));
+                break;
+            }
+
+            case MotionEvent.ACTION_MOVE: {
+                final int pCount = motionEvent.getPointerCount();
+                for(int n = 0; n < pCount; ++n) {
+                    pad.move(motionEvent.getPointerId(n), motionEvent.getX(n), motionEvent.getY(n));
+                }
+                break;
+            }
+
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_POINTER_UP: {
+                pad.up(motionEvent.getPointerId(motionEvent.getActionIndex()));
+                break;
+            }
+
+            case MotionEvent.ACTION_CANCEL: {
+                pad.release();
+                break;
+            }
+        }
+        reportEdges(previous, motionEvent.getEventTime());
+        return true;
+    }
+
+    /* Report and redraw every button that changed since the previous mask */
+    private void reportEdges(int previous, long eventTime) {
+        final int changed = previous ^ pad.getPressed();
+        if(changed == 0) {
+            return;
+        }
+        dirty.setEmpty();
+        final float radius = pad.getRadius() + 1;
+        for(int button = 0; button < CommandCodec.BUTTON_COUNT; ++button) {
+            if((changed & (1 << button)) != 0) {
+                listener.onActionButton(button, pad.isPressed(button), eventTime);
+                final float x = pad.getCenterX(button);
+                final float y = pad.getCenterY(button);
+                dirty.union((int)(x - radius), (int)(y - radius), (int)(x + radius) + 1, (int)(y + radius) + 1);
+            }
+        }
+        invalidate(dirty);
+    }
+}
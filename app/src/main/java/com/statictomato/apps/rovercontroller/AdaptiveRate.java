@@ -0,0 +1,154 @@
+package com.statictomato.apps.rovercontroller;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the drive command rate from the LinkQuality, between configurable bounds.
+ *
+ * Additive increase, multiplicative decrease, as in TCP congestion control: the
+ * rate halves when the link shows congestion, a write stall, heavy loss, a round
+ * trip above the limit or writes blocking for more than half the command period,
+ * and creeps up by a fixed step while the link is clean. It is adjusted at most
+ * once per adjust interval, so every step is judged on fresh estimates. After
+ * backing off, the link has to stay clean for a few intervals before the rate
+ * grows again, as a BackpressureMonitor throttling the writes after a stall
+ * hides the congestion for a while.
+ */
+public class AdaptiveRate {
+
+    public static final int DEFAULT_MIN_RATE = CommandScheduler.MIN_RATE;
+    public static final int DEFAULT_MAX_RATE = 100;
+    public static final int STEP = 5; // Hz
+
+    public static final long ADJUST_INTERVAL_MILLIS = 500;
+    public static final int RECOVERY_INTERVALS = 4;
+    public static final long DEFAULT_ROUND_TRIP_LIMIT_MILLIS = 150;
+
+    /* Loss above which the rate backs off, and below which it may grow */
+    public static final double HIGH_LOSS = 0.10;
+    public static final double LOW_LOSS = 0.02;
+
+    private final LinkQuality quality;
+    private int minRate;
+    private int maxRate;
+    private int rate;
+    private long roundTripLimitNanos;
+    private long lastAdjustNanos;
+    private long lastStalls;
+    private int cleanIntervals = RECOVERY_INTERVALS;
+    private long decreases;
+    private long increases;
+
+    public AdaptiveRate(LinkQuality quality) {
+        if (quality == null) {
+            throw new IllegalArgumentException("Link quality must not be null");
+        }
+        this.quality = quality;
+        setBounds(DEFAULT_MIN_RATE, DEFAULT_MAX_RATE);
+        roundTripLimitNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_ROUND_TRIP_LIMIT_MILLIS);
+    }
+
+    /**
+     * Set the bounds of the rate in Hz, within CommandScheduler's. The current
+     * rate is clamped to them.
+     */
+    public synchronized void setBounds(int minRate, int maxRate) {
+        if (minRate < CommandScheduler.MIN_RATE || maxRate > CommandScheduler.MAX_RATE || minRate > maxRate) {
+            throw new IllegalArgumentException("Invalid bounds: " + minRate + ", " + maxRate);
+        }
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        rate = Math.max(minRate, Math.min(maxRate, rate));
+    }
+
+    public synchronized int getMinRate() {
+        return minRate;
+    }
+
+    public synchronized int getMaxRate() {
+        return maxRate;
+    }
+
+    /**
+     * Set the round trip above which the rate backs off.
+     */
+    public synchronized void setRoundTripLimit(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Round trip limit must be positive");
+        }
+        roundTripLimitNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Start over from the given rate, as for a new connection.
+     */
+    public synchronized void reset(int rate) {
+        this.rate = Math.max(minRate, Math.min(maxRate, rate));
+        lastAdjustNanos = 0;
+        lastStalls = quality.getStalls();
+        cleanIntervals = RECOVERY_INTERVALS;
+    }
+
+    /**
+     * Adjust the rate if the adjust interval has passed. Cheap enough to call on
+     * every tick.
+     *
+     * @return the current rate in Hz.
+     */
+    public synchronized int update(long nowNanos) {
+        if (lastAdjustNanos == 0) {
+            lastAdjustNanos = nowNanos;
+            return rate;
+        }
+        if (nowNanos - lastAdjustNanos < TimeUnit.MILLISECONDS.toNanos(ADJUST_INTERVAL_MILLIS)) {
+            return rate;
+        }
+        lastAdjustNanos = nowNanos;
+
+        final long stalls = quality.getStalls();
+        // Not when the count went down, as after a reset of the estimates
+        final boolean stalled = stalls > lastStalls;
+        lastStalls = stalls;
+        final double loss = quality.getLossRate();
+        final long roundTrip = quality.getRoundTripNanos();
+        final long period = TimeUnit.SECONDS.toNanos(1) / rate;
+
+        if (stalled || loss > HIGH_LOSS || roundTrip > roundTripLimitNanos
+                || quality.getWriteNanos() > period / 2) {
+            cleanIntervals = 0;
+            final int next = Math.max(minRate, rate / 2);
+            if (next != rate) {
+                rate = next;
+                ++decreases;
+            }
+        } else if (loss < LOW_LOSS && roundTrip > 0) {
+            // Only once answers show the link works at all
+            if (++cleanIntervals >= RECOVERY_INTERVALS && rate < maxRate) {
+                rate = Math.min(maxRate, rate + STEP);
+                ++increases;
+            }
+        }
+        return rate;
+    }
+
+    public synchronized int getRate() {
+        return rate;
+    }
+
+    public synchronized long getDecreases() {
+        return decreases;
+    }
+
+    public synchronized long getIncreases() {
+        return increases;
+    }
+
+    /**
+     * Append a one line summary of the rate and the estimates it follows.
+     */
+    public void export(StringBuilder out) {
+        out.append("rate=").append(getRate()).append(" Hz (")
+                .append(getMinRate()).append('-').append(getMaxRate()).append(") ");
+        quality.export(out);
+    }
+}
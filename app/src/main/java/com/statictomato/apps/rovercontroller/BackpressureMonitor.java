@@ -0,0 +1,178 @@
+package com.statictomato.apps.rovercontroller;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Watches the outbound writes for a congested link.
+ *
+ * A write that blocks for longer than the stall threshold means the transport's
+ * buffer is full, as when the radio cannot keep up. After a stall the drive
+ * commands are throttled to one per throttled interval for a while, so the
+ * buffer can drain and the mailbox coalesces the commands in between. Commands
+ * that have waited longer than the stale limit by the time they could be sent
+ * are dropped, a fresher one follows from the periodic sending.
+ *
+ * The writes, stalls, drops and the age of every command sent, from publish
+ * to written, are counted for tuning. Writes may be reported from any thread,
+ * the stale check and the throttling are for the writing thread only.
+ */
+public class BackpressureMonitor {
+
+    public static final long DEFAULT_STALL_MILLIS = 50;
+    public static final long DEFAULT_STALE_MILLIS = 250;
+    public static final long DEFAULT_THROTTLE_MILLIS = 1000;
+    public static final long DEFAULT_THROTTLED_INTERVAL_MILLIS = 100;
+
+    private final LatencyHistogram writeTimes = new LatencyHistogram();
+    private final LatencyHistogram commandAges = new LatencyHistogram();
+    private final AtomicLong stalls = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long stallNanos;
+    private volatile long staleNanos;
+    private volatile long throttleNanos;
+    private volatile long throttledIntervalNanos;
+    private volatile long throttledUntilNanos;
+    private volatile boolean throttled;
+
+    public BackpressureMonitor() {
+        setStallThreshold(DEFAULT_STALL_MILLIS);
+        setStaleLimit(DEFAULT_STALE_MILLIS);
+        setThrottle(DEFAULT_THROTTLE_MILLIS, DEFAULT_THROTTLED_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Set how long a write may block before it counts as a stall.
+     */
+    public void setStallThreshold(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Stall threshold must be positive");
+        }
+        stallNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Set the age after which a command is dropped instead of sent, 0 to never drop.
+     */
+    public void setStaleLimit(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Stale limit must not be negative");
+        }
+        staleNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Set how long the commands are throttled after a stall, 0 to never throttle,
+     * and the interval between them meanwhile.
+     */
+    public void setThrottle(long millis, long intervalMillis) {
+        if (millis < 0 || intervalMillis <= 0) {
+            throw new IllegalArgumentException("Invalid throttle: " + millis + ", " + intervalMillis);
+        }
+        throttleNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+        throttledIntervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    /**
+     * Report a write, timed from the start of the write to the end of the flush.
+     *
+     * @return true if it stalled.
+     */
+    public boolean onWritten(long startNanos, long endNanos) {
+        final long nanos = endNanos - startNanos;
+        writeTimes.record(nanos);
+        if (nanos < stallNanos) {
+            return false;
+        }
+        stalls.incrementAndGet();
+        if (throttleNanos > 0) {
+            throttledUntilNanos = endNanos + throttleNanos;
+            throttled = true;
+        }
+        return true;
+    }
+
+    /**
+     * Check whether a command published at the given time is too old to be sent,
+     * counting it as dropped if so.
+     */
+    public boolean isStale(long postedNanos, long nowNanos) {
+        final long limit = staleNanos;
+        if (limit > 0 && nowNanos - postedNanos > limit) {
+            dropped.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Report a command sent, published at the given time.
+     */
+    public void onSent(long postedNanos, long writtenNanos) {
+        commandAges.record(writtenNanos - postedNanos);
+    }
+
+    /**
+     * Time to wait before the next command may be sent, 0 unless throttled.
+     *
+     * @param lastSentNanos when the last command was sent.
+     */
+    public long holdNanos(long nowNanos, long lastSentNanos) {
+        if (!throttled) {
+            return 0;
+        }
+        if (nowNanos - throttledUntilNanos >= 0) {
+            throttled = false;
+            return 0;
+        }
+        return Math.max(0, lastSentNanos + throttledIntervalNanos - nowNanos);
+    }
+
+    public boolean isThrottled() {
+        return throttled && System.nanoTime() - throttledUntilNanos < 0;
+    }
+
+    /**
+     * Duration of the writes, including the flush.
+     */
+    public LatencyHistogram getWriteTimes() {
+        return writeTimes;
+    }
+
+    /**
+     * Age of the commands sent, from publish to written.
+     */
+    public LatencyHistogram getCommandAges() {
+        return commandAges;
+    }
+
+    public long getStalls() {
+        return stalls.get();
+    }
+
+    /**
+     * Commands dropped as stale.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public void reset() {
+        writeTimes.reset();
+        commandAges.reset();
+        stalls.set(0);
+        dropped.set(0);
+    }
+
+    /**
+     * Append a report of the writes and command ages, in microseconds.
+     */
+    public void export(StringBuilder out) {
+        out.append("write: ");
+        writeTimes.export(out);
+        out.append("\ncommand age: ");
+        commandAges.export(out);
+        out.append("\nstalls: ").append(getStalls())
+                .append(", stale dropped: ").append(getDropped()).append('\n');
+    }
+}
@@ -4,37 +4,34 @@ package com.statictomato.apps.rovercontroller;
 import android.app.Service;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothSocket;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.os.Binder;
 import android.os.Handler;
 import android.os.IBinder;
 import android.support.annotation.Nullable;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.util.UUID;
+public class BluetoothSerialService extends Service implements SerialLink.Listener {
 
-public class BluetoothSerialService extends Service {
-
-    /* The SPP (Serial Port Profile) UUID */
-    private static final UUID MY_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
-
-    public static final char START = 'S';
-    public static final char END = 'E';
+    // Preferences remembering the last connected rover
+    private static final String PREFERENCES = "bluetooth_serial";
+    private static final String KEY_LAST_DEVICE = "last_device_address";
+    private static final String KEY_AUTO_RECONNECT = "auto_reconnect";
+    private static final String KEY_COMMAND_FORMAT = "command_format";
 
     // Member fields
     private Handler handler;
     private Binder binder;
-    private ConnectThread connectThread;
-    private ConnectedThread connectedThread;
-    private int state;
+    private final SerialLink link;
+    private final TelemetryCoalescer telemetry = new TelemetryCoalescer();
+    private SharedPreferences preferences;
 
     // Constants that indicate the current connection state
-    public static final int STATE_STANDBY = 0;       // we're doing nothing
-    public static final int STATE_CONNECTING = 1; // now initiating an outgoing connection
-    public static final int STATE_CONNECTED = 2;  // now connected to a remote device
+    public static final int STATE_STANDBY = SerialLink.STATE_STANDBY;       // we're doing nothing
+    public static final int STATE_CONNECTING = SerialLink.STATE_CONNECTING; // now initiating an outgoing connection
+    public static final int STATE_CONNECTED = SerialLink.STATE_CONNECTED;   // now connected to a remote device
+    public static final int STATE_DISCONNECTING = SerialLink.STATE_DISCONNECTING; // now shutting down the connection
+    public static final int STATE_RECONNECTING = SerialLink.STATE_RECONNECTING;   // re-establishing a lost connection
 
     /*public BluetoothSerialService(Context context, Handler handler) {
         this.binder = new BluetoothSerialBinder();
@@ -43,6 +40,7 @@ public class BluetoothSerialService extends Service {
 
     public BluetoothSerialService() {
         binder = new BluetoothSerialBinder();
+        link = new SerialLink(this);
     }
 
     public class BluetoothSerialBinder extends Binder {
@@ -57,299 +55,199 @@ public class BluetoothSerialService extends Service {
         return binder;
     }
 
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        preferences = getSharedPreferences(PREFERENCES, MODE_PRIVATE);
+        link.setAutoReconnect(preferences.getBoolean(KEY_AUTO_RECONNECT, false));
+        link.setCommandFormat(preferences.getInt(KEY_COMMAND_FORMAT, CommandCodec.FORMAT_LEGACY));
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
-        stop();
+        link.stop();
         if(handler != null) {
             handler = null;
         }
     }
 
-    /**
-     * Set the current state of the chat connection.
-     */
-    private synchronized void setState(int state) {
-        this.state = state;
-        // Give the new state to the Handler so the UI Activity can update
-        if(handler != null) {
-            handler.obtainMessage(MessageConstants.MESSAGE_STATE_CHANGE, state, -1).sendToTarget();
-        }
-    }
-
     public void setHandler(Handler handler) {
         this.handler = handler;
     }
 
     /**
-     * Return the current connection state.
+     * Return the link running the connection.
      */
-    public synchronized int getState() {
-        return state;
+    public SerialLink getLink() {
+        return link;
     }
 
-    public void start() {
-        // Cancel any thread attempting to make a connection
-        if (connectThread != null) {
-            connectThread.cancel();
-            connectThread = null;
-        }
+    /**
+     * Return the latest telemetry, for the UI to render once per display frame.
+     */
+    public TelemetryCoalescer getTelemetry() {
+        return telemetry;
+    }
 
-        // Cancel any thread currently running a connection
-        if (connectedThread != null) {
-            connectedThread.cancel();
-            connectedThread = null;
-        }
+    /**
+     * Select the drive command format, see CommandCodec. Remembered for the next start.
+     */
+    public void setCommandFormat(int format) {
+        link.setCommandFormat(format);
+        preferences.edit().putInt(KEY_COMMAND_FORMAT, format).apply();
+    }
 
-        setState(STATE_STANDBY);
+    public int getCommandFormat() {
+        return link.getCommandFormat();
     }
 
     /**
-     * Start the ConnectThread to initiate a connection to a remote device.
+     * Return the current connection state. Lock free, safe to call from the touch path.
      */
-    public synchronized void connect(BluetoothDevice device) {
-        // Cancel any thread attempting to make a connection
-        if (connectThread != null) {
-            connectThread.cancel();
-            connectThread = null;
-        }
-
-        // Cancel any thread currently running a connection
-        if (connectedThread != null) {
-            connectedThread.cancel();
-            connectedThread = null;
-        }
+    public int getState() {
+        return link.getState();
+    }
 
-        // Start the thread to connect with the given device
-        connectThread = new ConnectThread(device);
-        connectThread.start();
+    public void start() {
+        link.stop();
+        onStateChanged(STATE_STANDBY);
     }
 
     /**
-     * Write to the ConnectedThread
+     * Initiate a connection to a remote device, and remember it for reconnectLastDevice().
      */
-    public synchronized void write(String data) {
-        if (getState() != STATE_CONNECTED) {
-            return;
-        }
-        connectedThread.write((START + data + END).getBytes());
+    public void connect(BluetoothDevice device) {
+        preferences.edit().putString(KEY_LAST_DEVICE, device.getAddress()).apply();
+        link.connect(RfcommTransport.factory(device));
     }
 
     /**
-     * Stop all threads
+     * Initiate a connection to the last device connected to.
+     *
+     * @return false if there is none or Bluetooth is not enabled.
      */
-    public synchronized void stop() {
-
-        if (connectThread != null) {
-            connectThread.cancel();
-            connectThread = null;
-        }
-
-        if (connectedThread != null) {
-            connectedThread.cancel();
-            connectedThread = null;
-        }
-
-        if(getState() == STATE_STANDBY) {
-            handler.obtainMessage(MessageConstants.MESSAGE_TOAST,R.string.not_connected,-1).sendToTarget();
-        } else {
-            setState(STATE_STANDBY);
+    public boolean reconnectLastDevice() {
+        String address = preferences.getString(KEY_LAST_DEVICE, null);
+        BluetoothAdapter adapter = BluetoothAdapter.getDefaultAdapter();
+        if (address == null || adapter == null || !adapter.isEnabled()) {
+            return false;
         }
+        connect(adapter.getRemoteDevice(address));
+        return true;
     }
 
     /**
-     * Start the ConnectedThread to begin managing a Bluetooth connection
+     * Re-establish lost connections automatically, see SerialLink. Remembered
+     * across restarts.
      */
-    private void manageConnectedSocket(BluetoothSocket socket, BluetoothDevice device) {
-
-        // Cancel the thread that completed the connection
-        if (connectThread != null) {
-            connectThread = null;
-        }
-
-        // Cancel any thread currently running a connection
-        if (connectedThread != null) {
-            connectedThread.cancel();
-            connectedThread = null;
-        }
-
-        // Send the name of the connected device back to the UI Activity
-        String name = device.getName();
-        if(handler != null) {
-            handler.obtainMessage(MessageConstants.MESSAGE_DEVICE_NAME, name).sendToTarget();
-        }
+    public void setAutoReconnect(boolean autoReconnect) {
+        link.setAutoReconnect(autoReconnect);
+        preferences.edit().putBoolean(KEY_AUTO_RECONNECT, autoReconnect).apply();
+    }
 
-        // Start the thread to manage the connection and perform transmissions
-        connectedThread = new ConnectedThread(socket);
-        connectedThread.start();
+    public boolean isAutoReconnect() {
+        return link.isAutoReconnect();
     }
 
     /**
-     * Indicate that the connection attempt failed and notify the UI Activity.
+     * Initiate a connection over any transport.
      */
-    private void connectionFailed() {
-        // Send a failure message back to the Activity
-        if(handler != null) {
-            handler.obtainMessage(MessageConstants.MESSAGE_TOAST, R.string.connection_failed, -1).sendToTarget();
-        }
-        BluetoothSerialService.this.stop();
+    public void connect(Transport transport) {
+        link.connect(transport);
     }
 
     /**
-     * Indicate that the connection was lost and notify the UI Activity.
+     * Publish the latest drive command with the signed wheel values. Never blocks;
+     * the link's writer thread sends it, replacing any older command it has not sent yet.
      */
-    private void connectionLost() {
-        // Send a failure message back to the Activity
-        if(handler != null) {
-            handler.obtainMessage(MessageConstants.MESSAGE_TOAST, R.string.connection_lost, -1).sendToTarget();
-        }
-        BluetoothSerialService.this.stop();
+    public void publishDrive(int left, int right) {
+        link.publishDrive(left, right);
     }
 
     /**
-     * Bluetooth client
+     * Send a button press or release right away, see SerialLink.publishButton().
      *
-     * This thread runs while attempting to make an outgoing connection
-     * with a device. It runs straight through; the connection either
-     * succeeds or fails.
+     * @param inputNanos when it happened, in the System.nanoTime() time base.
      */
-    private class ConnectThread extends Thread {
-
-        private final BluetoothSocket socket;
-        private final BluetoothDevice device;
-
-        private ConnectThread(BluetoothDevice device) {
-            // Use a temporary object that is later assigned to socket
-            // because socket is final.
-            BluetoothSocket tmp = null;
-            this.device = device;
-
-            try {
-                // Get a BluetoothSocket to connect with the given BluetoothDevice.
-                // MY_UUID is the app's UUID string, also used in the server code.
-                tmp = device.createRfcommSocketToServiceRecord(MY_UUID);
-            } catch (IOException e) {
-                /* Ignore... */
-            }
-            socket = tmp;
-            setState(STATE_CONNECTING);
-        }
+    public void publishButton(int button, boolean pressed, long inputNanos) {
+        link.publishButton(button, pressed, inputNanos);
+    }
 
-        public void run() {
-            // Cancel discovery because it otherwise slows down the connection.
-            // Always cancel discovery before connecting to remote device.
-            BluetoothAdapter.getDefaultAdapter().cancelDiscovery();
-            try {
-                // Connect to the remote device through the socket. This call blocks
-                // until it succeeds or throws an exception.
-                socket.connect();
-            } catch (IOException connectException) {
-                // Unable to connect; close the socket and return.
-                try {
-                    socket.close();
-                } catch (IOException closeException) {
-                    /* Ignore... */
-                }
-                connectionFailed();
-                return;
-            }
+    /**
+     * Stop the rover ahead of any other traffic, see SerialLink.emergencyStop().
+     */
+    public void emergencyStop() {
+        link.emergencyStop();
+    }
 
-            // The connection attempt succeeded. Perform work associated with
-            // the connection in a separate thread.
-            manageConnectedSocket(socket,device);
-        }
+    /**
+     * Only send drive commands that differ from the last one sent, see ChangeFilter.
+     */
+    public void setChangeDriven(boolean changeDriven) {
+        link.setChangeDriven(changeDriven);
+    }
 
-        // Closes the client socket and causes the thread to finish.
-        private void cancel() {
-            try {
-                socket.close();
-            } catch (IOException e) {
-                /* Ignore... */
-            }
-        }
+    public boolean isChangeDriven() {
+        return link.isChangeDriven();
     }
 
     /**
-     * Bluetooth connection
-     *
-     * This thread runs during a connection with a remote device.
-     * It handles all incoming and outgoing transmissions.
+     * Stop all threads
      */
-    private class ConnectedThread extends Thread {
-
-        private final BluetoothSocket socket;
-        private final InputStream inStream;
-        private final OutputStream outStream;
-        private byte[] buffer; // buffer store for the stream
-
-        private ConnectedThread(BluetoothSocket socket) {
-            this.socket = socket;
-            InputStream tmpIn = null;
-            OutputStream tmpOut = null;
-
-            // Get the input and output streams; using temp objects because
-            // member streams are final.
-            try {
-                tmpIn = socket.getInputStream();
-                tmpOut = socket.getOutputStream();
-            } catch (IOException e) {
-                /* Ignore... */
+    public void stop() {
+        if(link.getState() == STATE_STANDBY) {
+            if(handler != null) {
+                handler.obtainMessage(MessageConstants.MESSAGE_TOAST, R.string.not_connected, -1).sendToTarget();
             }
+        } else {
+            link.stop();
+        }
+    }
 
-            inStream = tmpIn;
-            outStream = tmpOut;
-            setState(STATE_CONNECTED);
+    @Override
+    public void onStateChanged(int state) {
+        // Give the new state to the Handler so the UI Activity can update
+        if(handler != null) {
+            handler.obtainMessage(MessageConstants.MESSAGE_STATE_CHANGE, state, -1).sendToTarget();
         }
+    }
 
-        public void run() {
-            buffer = new byte[512];
-            int i;
-            byte c;
-            String data;
-
-            // Keep listening to the InputStream until an exception occurs.
-            while (state == STATE_CONNECTED) {
-                try {
-                    if((byte) inStream.read() == START) {
-                        c = 0;
-                        i = 0;
-                        while (c != END && i < 512) {
-                            c = (byte) inStream.read();
-                            buffer[i] = c;
-                            ++i;
-                        }
-                        if(c == END) {
-                            data = new String(buffer,0,i-1);
-                            if(handler != null) {
-                                handler.obtainMessage(MessageConstants.MESSAGE_READ, data).sendToTarget();
-                            }
-                        }
-
-                    }
-                } catch (IOException e) {
-                    connectionLost();
-                    break;
-                }
-            }
+    @Override
+    public void onConnected(String name) {
+        // Send the name of the connected device back to the UI Activity
+        if(handler != null) {
+            handler.obtainMessage(MessageConstants.MESSAGE_DEVICE_NAME, name).sendToTarget();
         }
+    }
 
-        // Call this from the main activity to send data to the remote device.
-        private void write(byte[] bytes) {
-            try {
-                outStream.write(bytes);
-                outStream.flush();
-            } catch (IOException e) {
-                connectionLost();
-            }
+    @Override
+    public void onFrame(byte[] frame, int length) {
+        /* Telemetry arrives typed through onTelemetry(), the UI has no use for other frames */
+    }
+
+    @Override
+    public void onTelemetry(int left, int right) {
+        // Only the first frame since the last render wakes the UI, the rest replace it
+        final Handler target = handler;
+        if(target != null && telemetry.offer(left, right)) {
+            target.sendEmptyMessage(MessageConstants.MESSAGE_TELEMETRY);
         }
+    }
 
-        // Call this method from the main activity to shut down the connection.
-        private void cancel() {
-            try {
-                socket.close();
-            } catch (IOException e) {
-                /* Ignore... */
-            }
+    @Override
+    public void onConnectionFailed() {
+        // Send a failure message back to the Activity
+        if(handler != null) {
+            handler.obtainMessage(MessageConstants.MESSAGE_TOAST, R.string.connection_failed, -1).sendToTarget();
+        }
+    }
+
+    @Override
+    public void onConnectionLost() {
+        // Send a failure message back to the Activity
+        if(handler != null) {
+            handler.obtainMessage(MessageConstants.MESSAGE_TOAST, R.string.connection_lost, -1).sendToTarget();
         }
     }
 
@@ -0,0 +1,156 @@
+package com.statictomato.apps.rovercontroller;
+
+/**
+ * Tracks the A, B, X and Y action buttons, in view coordinates.
+ *
+ * The buttons sit in a diamond as on a gamepad, Y at the top, X on the left,
+ * B on the right and A at the bottom. Each pointer holds at most one button
+ * and each button is held by at most one pointer, so several fingers press
+ * several buttons at once. A pointer sliding off its button releases it, and
+ * sliding onto a free one presses that, letting a thumb roll between buttons.
+ *
+ * The pressed buttons are a bit mask indexed by the CommandCodec button, the
+ * edges of an event are the bits that differ from the mask before it. Free of
+ * Android classes so it runs on the JVM.
+ */
+public class ButtonPad {
+
+    public static final int INVALID_POINTER_ID = -1;
+
+    /* Layout of the diamond, in steps of the button radius from the center */
+    private static final int[] COLUMN = new int[CommandCodec.BUTTON_COUNT];
+    private static final int[] ROW = new int[CommandCodec.BUTTON_COUNT];
+
+    static {
+        COLUMN[CommandCodec.BUTTON_A] = 0;
+        ROW[CommandCodec.BUTTON_A] = 2;
+        COLUMN[CommandCodec.BUTTON_B] = 2;
+        ROW[CommandCodec.BUTTON_B] = 0;
+        COLUMN[CommandCodec.BUTTON_X] = -2;
+        ROW[CommandCodec.BUTTON_X] = 0;
+        COLUMN[CommandCodec.BUTTON_Y] = 0;
+        ROW[CommandCodec.BUTTON_Y] = -2;
+    }
+
+    private final float[] centerX = new float[CommandCodec.BUTTON_COUNT];
+    private final float[] centerY = new float[CommandCodec.BUTTON_COUNT];
+    private final int[] pointer = new int[CommandCodec.BUTTON_COUNT];
+
+    private float radius;
+    private float radiusSquared;
+    private int pressed;
+
+    public ButtonPad() {
+        release();
+    }
+
+    /**
+     * Place the diamond in a square of the given side around the center.
+     * Releases all buttons.
+     */
+    public void setGeometry(float x, float y, int size) {
+        radius = size/6;
+        radiusSquared = radius * radius;
+        for(int button = 0; button < CommandCodec.BUTTON_COUNT; ++button) {
+            centerX[button] = x + COLUMN[button] * radius;
+            centerY[button] = y + ROW[button] * radius;
+        }
+        release();
+    }
+
+    /**
+     * The button under the point, whether a pointer holds it or not, or -1.
+     */
+    public int buttonAt(float x, float y) {
+        for(int button = 0; button < CommandCodec.BUTTON_COUNT; ++button) {
+            final float dx = x - centerX[button];
+            final float dy = y - centerY[button];
+            if(dx * dx + dy * dy <= radiusSquared) {
+                return button;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A pointer went down, pressing the button under it if free.
+     */
+    public void down(int pointerId, float x, float y) {
+        final int button = buttonAt(x, y);
+        if(button >= 0 && pointer[button] == INVALID_POINTER_ID) {
+            pointer[button] = pointerId;
+            pressed |= 1 << button;
+        }
+    }
+
+    /**
+     * A pointer moved, from its button onto another or off any.
+     */
+    public void move(int pointerId, float x, float y) {
+        final int held = heldBy(pointerId);
+        final int button = buttonAt(x, y);
+        if(button == held) {
+            return;
+        }
+        if(held >= 0) {
+            up(pointerId);
+        }
+        if(button >= 0) {
+            down(pointerId, x, y);
+        }
+    }
+
+    /**
+     * A pointer went up, releasing its button.
+     */
+    public void up(int pointerId) {
+        final int held = heldBy(pointerId);
+        if(held >= 0) {
+            pointer[held] = INVALID_POINTER_ID;
+            pressed &= ~(1 << held);
+        }
+    }
+
+    /**
+     * Release all buttons, as when the gesture is cancelled.
+     */
+    public void release() {
+        for(int button = 0; button < CommandCodec.BUTTON_COUNT; ++button) {
+            pointer[button] = INVALID_POINTER_ID;
+        }
+        pressed = 0;
+    }
+
+    /* The button the pointer holds, or -1 */
+    private int heldBy(int pointerId) {
+        for(int button = 0; button < CommandCodec.BUTTON_COUNT; ++button) {
+            if(pointer[button] == pointerId) {
+                return button;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Bit mask of the pressed buttons, bit n for CommandCodec button n.
+     */
+    public int getPressed() {
+        return pressed;
+    }
+
+    public boolean isPressed(int button) {
+        return (pressed & (1 << button)) != 0;
+    }
+
+    public float getCenterX(int button) {
+        return centerX[button];
+    }
+
+    public float getCenterY(int button) {
+        return centerY[button];
+    }
+
+    public float getRadius() {
+        return radius;
+    }
+}
@@ -0,0 +1,137 @@
+package com.statictomato.apps.rovercontroller;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides whether a drive command is worth sending.
+ *
+ * A command is sent when either wheel value moved to a different quantisation
+ * step than the last command sent, otherwise it is suppressed unless the keepalive
+ * interval has elapsed. Zero is a step of its own, so stopping a wheel is always
+ * sent straight away.
+ *
+ * Only the thread sending the commands calls shouldSend(), the settings and the
+ * counters may be accessed from any thread.
+ */
+public class ChangeFilter {
+
+    public static final int DEFAULT_STEP = 8;
+    public static final long DEFAULT_KEEPALIVE_MILLIS = 500;
+
+    private volatile int step;
+    private volatile long keepaliveNanos;
+
+    /* Last command sent */
+    private boolean hasSent;
+    private int lastLeft;
+    private int lastRight;
+    private long lastSentNanos;
+
+    private volatile long sent;
+    private volatile long suppressed;
+
+    public ChangeFilter() {
+        this(DEFAULT_STEP, DEFAULT_KEEPALIVE_MILLIS);
+    }
+
+    public ChangeFilter(int step, long keepaliveMillis) {
+        setStep(step);
+        setKeepalive(keepaliveMillis);
+    }
+
+    /**
+     * Set the quantisation step, changes smaller than a step are not sent.
+     */
+    public void setStep(int step) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("Step must be positive");
+        }
+        this.step = step;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * Set the interval after which an unchanged command is sent again.
+     */
+    public void setKeepalive(long keepaliveMillis) {
+        if (keepaliveMillis <= 0) {
+            throw new IllegalArgumentException("Keepalive must be positive");
+        }
+        keepaliveNanos = TimeUnit.MILLISECONDS.toNanos(keepaliveMillis);
+    }
+
+    public long getKeepaliveMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(keepaliveNanos);
+    }
+
+    public long getKeepaliveNanos() {
+        return keepaliveNanos;
+    }
+
+    /**
+     * Forget the last command sent, so the next one is sent unconditionally.
+     */
+    public void reset() {
+        hasSent = false;
+    }
+
+    /**
+     * @return true if the command should be sent, in which case it is recorded as sent.
+     */
+    public boolean shouldSend(int left, int right, long nowNanos) {
+        final int quantisedLeft = quantise(left);
+        final int quantisedRight = quantise(right);
+        if (hasSent && quantisedLeft == lastLeft && quantisedRight == lastRight
+                && nowNanos - lastSentNanos < keepaliveNanos) {
+            ++suppressed;
+            return false;
+        }
+        hasSent = true;
+        lastLeft = quantisedLeft;
+        lastRight = quantisedRight;
+        lastSentNanos = nowNanos;
+        ++sent;
+        return true;
+    }
+
+    /**
+     * Record a command sent without asking, such as an emergency stop, so an
+     * unchanged command following it is suppressed.
+     */
+    public void recordSent(int left, int right, long nowNanos) {
+        hasSent = true;
+        lastLeft = quantise(left);
+        lastRight = quantise(right);
+        lastSentNanos = nowNanos;
+        ++sent;
+    }
+
+    private int quantise(int value) {
+        final int s = step;
+        if (value > 0) {
+            return value / s + 1;
+        } else if (value < 0) {
+            return value / s - 1;
+        }
+        return 0;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    public long getSuppressed() {
+        return suppressed;
+    }
+
+    /**
+     * Append a one line summary of the commands sent and suppressed.
+     */
+    public void export(StringBuilder out) {
+        out.append("sent=").append(getSent())
+                .append(" suppressed=").append(getSuppressed());
+    }
+}
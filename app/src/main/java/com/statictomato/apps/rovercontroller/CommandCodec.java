@@ -0,0 +1,340 @@
+package com.statictomato.apps.rovercontroller;
+
+/**
+ * Encoder and decoder for the drive command frames sent to the rover.
+ *
+ * Two formats are supported:
+ *
+ * Legacy ASCII, understood by older rover firmware:
+ *   START dir "," speed "," dir "," speed END
+ *
+ * Binary, 10 bytes regardless of the values:
+ *   START type length seq leftHi leftLo rightHi rightLo crc END
+ *
+ * Heartbeat, binary only, echoed back unchanged by the rover:
+ *   START type length seq crc END
+ *
+ * Button event, binary only, sent once on every press and every release:
+ *   START type length seq button state crc END
+ *
+ * Legacy parsers take any 'S' or 'E' for a frame boundary, and the sequence or
+ * CRC of a binary frame may be either, so no binary frame is sent in the
+ * legacy format.
+ *
+ * Binary frame types have the high bit set, which never happens for the first
+ * byte of an ASCII frame, so both formats can share the same stream. The length
+ * byte counts the payload following it, the CRC-8 covers type, length and payload.
+ *
+ * Wheel values are signed, positive values drive forward (legacy direction 0)
+ * and negative values drive backwards (legacy direction 1).
+ *
+ * An instance encodes into its own preallocated buffer and must only be used for
+ * encoding by one thread, the format may be changed from any thread.
+ */
+public class CommandCodec {
+
+    public static final char START = 'S';
+    public static final char END = 'E';
+
+    // Command formats
+    public static final int FORMAT_LEGACY = 0;
+    public static final int FORMAT_BINARY = 1;
+
+    // Binary frame types
+    public static final int TYPE_DRIVE = 0x81;
+    public static final int TYPE_HEARTBEAT = 0x82;
+    public static final int TYPE_BUTTON = 0x83;
+
+    // Action buttons
+    public static final int BUTTON_A = 0;
+    public static final int BUTTON_B = 1;
+    public static final int BUTTON_X = 2;
+    public static final int BUTTON_Y = 3;
+    public static final int BUTTON_COUNT = 4;
+
+    public static final int DRIVE_PAYLOAD_LENGTH = 5;
+    public static final int DRIVE_FRAME_LENGTH = DRIVE_PAYLOAD_LENGTH + 5;
+    public static final int HEARTBEAT_PAYLOAD_LENGTH = 1;
+    public static final int HEARTBEAT_FRAME_LENGTH = HEARTBEAT_PAYLOAD_LENGTH + 5;
+    public static final int BUTTON_PAYLOAD_LENGTH = 3;
+    public static final int BUTTON_FRAME_LENGTH = BUTTON_PAYLOAD_LENGTH + 5;
+
+    /* Longest frame is the legacy S1,32768,1,32768E */
+    private static final int MAX_FRAME_LENGTH = 32;
+
+    private static final byte[] CRC_TABLE = new byte[256];
+
+    static {
+        /* CRC-8, polynomial x^8 + x^2 + x + 1 */
+        for (int i = 0; i < 256; ++i) {
+            int crc = i;
+            for (int bit = 0; bit < 8; ++bit) {
+                crc = (crc & 0x80) != 0 ? (crc << 1) ^ 0x07 : crc << 1;
+            }
+            CRC_TABLE[i] = (byte) crc;
+        }
+    }
+
+    /**
+     * Holder for a decoded drive command, reused between calls.
+     */
+    public static class DriveCommand {
+        public int sequence;
+        public int left;
+        public int right;
+    }
+
+    /**
+     * Holder for a decoded button event, reused between calls.
+     */
+    public static class ButtonEvent {
+        public int sequence;
+        public int button;
+        public boolean pressed;
+    }
+
+    private final byte[] buffer;
+    private volatile int format;
+    private int sequence;
+
+    /**
+     * Legacy by default, the only format the rover firmware in the field understands.
+     */
+    public CommandCodec() {
+        this(FORMAT_LEGACY);
+    }
+
+    public CommandCodec(int format) {
+        buffer = new byte[MAX_FRAME_LENGTH];
+        setFormat(format);
+    }
+
+    public void setFormat(int format) {
+        if (format != FORMAT_LEGACY && format != FORMAT_BINARY) {
+            throw new IllegalArgumentException("Unknown command format: " + format);
+        }
+        this.format = format;
+    }
+
+    public int getFormat() {
+        return format;
+    }
+
+    /**
+     * Buffer holding the last encoded frame.
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Encode a drive command, including START and END, into the buffer.
+     *
+     * @return the length of the encoded frame.
+     */
+    public int encodeDrive(int left, int right) {
+        left = clampShort(left);
+        right = clampShort(right);
+        if (format == FORMAT_LEGACY) {
+            return encodeLegacy(left, right);
+        }
+        buffer[0] = (byte) START;
+        buffer[1] = (byte) TYPE_DRIVE;
+        buffer[2] = DRIVE_PAYLOAD_LENGTH;
+        buffer[3] = (byte) sequence;
+        buffer[4] = (byte) (left >> 8);
+        buffer[5] = (byte) left;
+        buffer[6] = (byte) (right >> 8);
+        buffer[7] = (byte) right;
+        buffer[8] = crc(buffer, 1, DRIVE_PAYLOAD_LENGTH + 2);
+        buffer[9] = (byte) END;
+        sequence = (sequence + 1) & 0xFF;
+        return DRIVE_FRAME_LENGTH;
+    }
+
+    /**
+     * Encode a heartbeat frame, including START and END, into the buffer.
+     * Heartbeats are always binary, whatever the format.
+     *
+     * @return the length of the encoded frame.
+     */
+    public int encodeHeartbeat() {
+        buffer[0] = (byte) START;
+        buffer[1] = (byte) TYPE_HEARTBEAT;
+        buffer[2] = HEARTBEAT_PAYLOAD_LENGTH;
+        buffer[3] = (byte) sequence;
+        buffer[4] = crc(buffer, 1, HEARTBEAT_PAYLOAD_LENGTH + 2);
+        buffer[5] = (byte) END;
+        sequence = (sequence + 1) & 0xFF;
+        return HEARTBEAT_FRAME_LENGTH;
+    }
+
+    /**
+     * Encode a button event, including START and END, into the buffer. Button
+     * events are always binary, and must not be sent in the legacy format.
+     *
+     * @return the length of the encoded frame.
+     */
+    public int encodeButton(int button, boolean pressed) {
+        buffer[0] = (byte) START;
+        buffer[1] = (byte) TYPE_BUTTON;
+        buffer[2] = BUTTON_PAYLOAD_LENGTH;
+        buffer[3] = (byte) sequence;
+        buffer[4] = (byte) button;
+        buffer[5] = (byte) (pressed ? 1 : 0);
+        buffer[6] = crc(buffer, 1, BUTTON_PAYLOAD_LENGTH + 2);
+        buffer[7] = (byte) END;
+        sequence = (sequence + 1) & 0xFF;
+        return BUTTON_FRAME_LENGTH;
+    }
+
+    private int encodeLegacy(int left, int right) {
+        int i = 0;
+        buffer[i++] = (byte) START;
+        i = putDecimal(direction(left), i);
+        buffer[i++] = ',';
+        i = putDecimal(speed(left), i);
+        buffer[i++] = ',';
+        i = putDecimal(direction(right), i);
+        buffer[i++] = ',';
+        i = putDecimal(speed(right), i);
+        buffer[i++] = (byte) END;
+        return i;
+    }
+
+    private int putDecimal(int value, int i) {
+        /* Count the digits, then fill them in from the least significant one */
+        int end = i + 1;
+        for (int v = value / 10; v > 0; v /= 10) {
+            ++end;
+        }
+        for (int n = end - 1; n >= i; --n) {
+            buffer[n] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    /**
+     * Decode a drive command frame in either format. The frame is given without
+     * START and END, as delivered by the FrameDecoder. Legacy frames carry no
+     * sequence number and are reported with sequence -1.
+     *
+     * @return true if the frame was a valid drive command.
+     */
+    public static boolean decodeDrive(byte[] frame, int length, DriveCommand out) {
+        if (length > 0 && (frame[0] & 0xFF) == TYPE_DRIVE) {
+            if (length != DRIVE_PAYLOAD_LENGTH + 3
+                    || frame[1] != DRIVE_PAYLOAD_LENGTH
+                    || frame[length - 1] != crc(frame, 0, length - 1)) {
+                return false;
+            }
+            out.sequence = frame[2] & 0xFF;
+            out.left = (short) ((frame[3] << 8) | (frame[4] & 0xFF));
+            out.right = (short) ((frame[5] << 8) | (frame[6] & 0xFF));
+            return true;
+        }
+        return decodeLegacy(frame, length, out);
+    }
+
+    /**
+     * Check for a valid heartbeat frame, given without START and END.
+     */
+    public static boolean isHeartbeat(byte[] frame, int length) {
+        return length == HEARTBEAT_PAYLOAD_LENGTH + 3
+                && (frame[0] & 0xFF) == TYPE_HEARTBEAT
+                && frame[1] == HEARTBEAT_PAYLOAD_LENGTH
+                && frame[length - 1] == crc(frame, 0, length - 1);
+    }
+
+    /**
+     * Decode a button event frame, given without START and END.
+     *
+     * @return true if the frame was a valid button event.
+     */
+    public static boolean decodeButton(byte[] frame, int length, ButtonEvent out) {
+        if (length != BUTTON_PAYLOAD_LENGTH + 3
+                || (frame[0] & 0xFF) != TYPE_BUTTON
+                || frame[1] != BUTTON_PAYLOAD_LENGTH
+                || frame[length - 1] != crc(frame, 0, length - 1)) {
+            return false;
+        }
+        out.sequence = frame[2] & 0xFF;
+        out.button = frame[3] & 0xFF;
+        out.pressed = frame[4] != 0;
+        return true;
+    }
+
+    private static boolean decodeLegacy(byte[] frame, int length, DriveCommand out) {
+        int field = 0;
+        int value = 0;
+        int digits = 0;
+        int leftDirection = 0;
+        int leftSpeed = 0;
+        int rightDirection = 0;
+        for (int i = 0; i <= length; ++i) {
+            if (i == length || frame[i] == ',') {
+                if (digits == 0) {
+                    return false;
+                }
+                if (field == 0) {
+                    leftDirection = value;
+                } else if (field == 1) {
+                    leftSpeed = value;
+                } else if (field == 2) {
+                    rightDirection = value;
+                } else {
+                    out.sequence = -1;
+                    out.left = toWheel(leftDirection, leftSpeed);
+                    out.right = toWheel(rightDirection, value);
+                    return i == length;
+                }
+                ++field;
+                value = 0;
+                digits = 0;
+            } else if (frame[i] >= '0' && frame[i] <= '9' && digits < 5) {
+                value = value * 10 + (frame[i] - '0');
+                ++digits;
+            } else {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * CRC-8 of the given bytes.
+     */
+    public static byte crc(byte[] data, int offset, int length) {
+        int crc = 0;
+        for (int i = offset; i < offset + length; ++i) {
+            crc = CRC_TABLE[(crc ^ data[i]) & 0xFF];
+        }
+        return (byte) crc;
+    }
+
+    /**
+     * Combine a legacy direction and speed into a signed wheel value.
+     */
+    public static int toWheel(int direction, int speed) {
+        return direction == 0 ? speed : -speed;
+    }
+
+    /**
+     * Legacy direction of a signed wheel value, 0 when it is 0.
+     */
+    public static int direction(int wheel) {
+        return wheel < 0 ? 1 : 0;
+    }
+
+    /**
+     * Legacy speed of a signed wheel value.
+     */
+    public static int speed(int wheel) {
+        return wheel < 0 ? -wheel : wheel;
+    }
+
+    private static int clampShort(int value) {
+        return Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+    }
+}
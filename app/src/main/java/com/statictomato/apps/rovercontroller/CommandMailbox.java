@@ -0,0 +1,275 @@
+package com.statictomato.apps.rovercontroller;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single slot mailbox holding the latest drive command.
+ *
+ * Any number of threads may post, posting never blocks and a command that has not
+ * been taken yet is simply overwritten by the newer one. A single consumer thread
+ * takes commands, blocking until one is pending.
+ *
+ * A second slot is the priority lane, for commands such as an emergency stop.
+ * A priority command is taken before anything else and discards the ordinary
+ * command still waiting, which it makes stale.
+ *
+ * Between the two is the event lane, a bounded queue for events such as button
+ * presses, which must each be sent once and in order, so are never overwritten.
+ * Events are taken after any priority command and before the ordinary command,
+ * which they leave pending. Posting to a full queue drops the event.
+ *
+ * The command is packed into one long: the left wheel value in bits 16-31, the
+ * right wheel value in bits 0-15, a pending flag in bit 32 and a priority flag
+ * in bit 33. Events are packed with their value in bits 0-31, the pending flag
+ * and an event flag in bit 34.
+ */
+public class CommandMailbox {
+
+    private static final long PENDING = 1L << 32;
+    private static final long PRIORITY = 1L << 33;
+    private static final long EVENT = 1L << 34;
+
+    /* Events waiting at most, a power of two */
+    public static final int EVENT_CAPACITY = 16;
+
+    /**
+     * Returned by poll() when no command was posted in time. Commands are
+     * returned with the pending flag set, so are never EMPTY.
+     */
+    public static final long EMPTY = 0;
+
+    private final AtomicLong slot = new AtomicLong();
+    private final AtomicLong prioritySlot = new AtomicLong();
+    private final AtomicLong posted = new AtomicLong();
+    private final AtomicLong overwritten = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLongArray events = new AtomicLongArray(EVENT_CAPACITY);
+    private final long[] eventNanos = new long[EVENT_CAPACITY];
+    private final AtomicLong eventTail = new AtomicLong();
+    private final AtomicLong eventsDropped = new AtomicLong();
+    private volatile long eventHead; // written by the consumer only
+    private volatile long eventsClearedBefore;
+    private long takenEventNanos;
+    private volatile Thread consumer;
+    private volatile long postedNanos;
+
+    /**
+     * Post a command, replacing any command that has not been taken yet.
+     */
+    public void post(int left, int right) {
+        postedNanos = System.nanoTime();
+        final long previous = slot.getAndSet(PENDING | pack(left, right));
+        posted.incrementAndGet();
+        if ((previous & PENDING) != 0) {
+            overwritten.incrementAndGet();
+        }
+        LockSupport.unpark(consumer);
+    }
+
+    /**
+     * Post a command on the priority lane. It is taken before any ordinary command,
+     * replaces a priority command not taken yet and discards the ordinary one.
+     */
+    public void postPriority(int left, int right) {
+        prioritySlot.set(PRIORITY | PENDING | pack(left, right));
+        posted.incrementAndGet();
+        LockSupport.unpark(consumer);
+    }
+
+    /**
+     * Post an event, queued behind the events not taken yet.
+     *
+     * @param timeNanos when the event happened, returned by getEventNanos() once taken.
+     * @return false if the queue was full and the event dropped.
+     */
+    public boolean postEvent(int event, long timeNanos) {
+        long index;
+        do {
+            index = eventTail.get();
+            if (index - eventHead >= EVENT_CAPACITY) {
+                eventsDropped.incrementAndGet();
+                return false;
+            }
+        } while (!eventTail.compareAndSet(index, index + 1));
+        final int i = (int) index & (EVENT_CAPACITY - 1);
+        // Published by the volatile write of the event
+        eventNanos[i] = timeNanos;
+        events.set(i, EVENT | PENDING | (event & 0xFFFFFFFFL));
+        posted.incrementAndGet();
+        LockSupport.unpark(consumer);
+        return true;
+    }
+
+    /**
+     * Take the pending command, waiting for one to be posted if necessary.
+     * Must only be called from the consumer thread.
+     */
+    public long take() throws InterruptedException {
+        consumer = Thread.currentThread();
+        while (true) {
+            final long value = tryTake();
+            if (value != EMPTY) {
+                return value;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            LockSupport.park(this);
+        }
+    }
+
+    /**
+     * Take the pending command, waiting at most the given time for one to be
+     * posted. Must only be called from the consumer thread.
+     *
+     * @return the command, or EMPTY if none was posted in time.
+     */
+    public long poll(long timeoutNanos) throws InterruptedException {
+        consumer = Thread.currentThread();
+        final long deadline = System.nanoTime() + timeoutNanos;
+        while (true) {
+            final long value = tryTake();
+            if (value != EMPTY) {
+                return value;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return EMPTY;
+            }
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    private long tryTake() {
+        final long priority = prioritySlot.get() == EMPTY ? EMPTY : prioritySlot.getAndSet(EMPTY);
+        if (priority != EMPTY) {
+            if (drop(slot)) {
+                discarded.incrementAndGet();
+            }
+            return priority;
+        }
+        while (true) {
+            // Claimed but not written yet, it is taken next time
+            final long head = eventHead;
+            final int i = (int) head & (EVENT_CAPACITY - 1);
+            final long event = events.get(i);
+            if (event == EMPTY) {
+                break;
+            }
+            takenEventNanos = eventNanos[i];
+            events.set(i, EMPTY);
+            eventHead = head + 1;
+            if (head >= eventsClearedBefore) {
+                return event;
+            }
+        }
+        final long value = slot.get();
+        if ((value & PENDING) != 0 && slot.compareAndSet(value, value & ~PENDING)) {
+            return value;
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Drop the pending commands, if any, on all lanes. The events posted so
+     * far are skipped by the consumer.
+     */
+    public void clear() {
+        drop(slot);
+        prioritySlot.set(EMPTY);
+        eventsClearedBefore = eventTail.get();
+    }
+
+    private static boolean drop(AtomicLong slot) {
+        long value;
+        do {
+            value = slot.get();
+            if ((value & PENDING) == 0) {
+                return false;
+            }
+        } while (!slot.compareAndSet(value, value & ~PENDING));
+        return true;
+    }
+
+    public boolean isPending() {
+        return (slot.get() & PENDING) != 0;
+    }
+
+    public boolean isPriorityPending() {
+        return prioritySlot.get() != EMPTY;
+    }
+
+    public boolean isEventPending() {
+        return eventTail.get() != eventHead;
+    }
+
+    /**
+     * Time given when posting the event taken last. Must only be called from
+     * the consumer thread.
+     */
+    public long getEventNanos() {
+        return takenEventNanos;
+    }
+
+    /**
+     * Events dropped because the queue was full.
+     */
+    public long getEventsDropped() {
+        return eventsDropped.get();
+    }
+
+    /**
+     * Time the latest ordinary command was posted. Read after taking a command,
+     * it is that command's time, or a newer one's if posted meanwhile.
+     */
+    public long getPostedNanos() {
+        return postedNanos;
+    }
+
+    public long getPosted() {
+        return posted.get();
+    }
+
+    /**
+     * Number of commands replaced by a newer one before they were taken.
+     */
+    public long getOverwritten() {
+        return overwritten.get();
+    }
+
+    /**
+     * Ordinary commands discarded by a priority command.
+     */
+    public long getDiscarded() {
+        return discarded.get();
+    }
+
+    private static long pack(int left, int right) {
+        return ((long) (left & 0xFFFF) << 16) | (right & 0xFFFF);
+    }
+
+    public static int left(long command) {
+        return (short) (command >> 16);
+    }
+
+    public static int right(long command) {
+        return (short) command;
+    }
+
+    public static boolean isPriority(long command) {
+        return (command & PRIORITY) != 0;
+    }
+
+    public static boolean isEvent(long command) {
+        return (command & EVENT) != 0;
+    }
+
+    public static int event(long command) {
+        return (int) command;
+    }
+}
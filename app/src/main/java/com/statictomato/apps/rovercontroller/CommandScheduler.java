@@ -0,0 +1,149 @@
+package com.statictomato.apps.rovercontroller;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed rate scheduler for the periodic drive commands.
+ *
+ * Ticks are aimed at absolute deadlines, start + n * period, on a dedicated thread,
+ * so the time spent in the listener and the wake-up jitter do not accumulate into
+ * drift. Every tick reports how late it fired. If the listener falls behind by
+ * more than a whole period the missed ticks are skipped and counted rather than
+ * fired in a burst.
+ */
+public class CommandScheduler {
+
+    public static final int MIN_RATE = 10;  // Hz
+    public static final int MAX_RATE = 200; // Hz
+
+    public interface TickListener {
+        /**
+         * Called on the scheduler thread for every tick.
+         *
+         * @param lateNanos how long after its deadline the tick fired.
+         */
+        void onTick(long lateNanos);
+    }
+
+    private final TickListener listener;
+    private volatile long periodNanos;
+    private volatile Thread thread;
+
+    /* Statistics, written by the scheduler thread only */
+    private volatile long ticks;
+    private volatile long missedTicks;
+    private volatile long lastLateNanos;
+    private volatile long maxLateNanos;
+
+    public CommandScheduler(int rate, TickListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must not be null");
+        }
+        this.listener = listener;
+        setRate(rate);
+    }
+
+    /**
+     * Set the tick rate in Hz, clamped to MIN_RATE and MAX_RATE.
+     * Takes effect from the next tick.
+     */
+    public void setRate(int rate) {
+        rate = Math.max(MIN_RATE, Math.min(MAX_RATE, rate));
+        periodNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    public int getRate() {
+        return (int) (TimeUnit.SECONDS.toNanos(1) / periodNanos);
+    }
+
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    public synchronized boolean isRunning() {
+        return thread != null;
+    }
+
+    /**
+     * Start ticking, the first tick fires immediately.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        ticks = 0;
+        missedTicks = 0;
+        lastLateNanos = 0;
+        maxLateNanos = 0;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                schedule();
+            }
+        }, "CommandScheduler");
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Stop ticking. May be called from the listener.
+     */
+    public synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    private void schedule() {
+        final Thread self = Thread.currentThread();
+        long previous = System.nanoTime() - periodNanos;
+        while (!self.isInterrupted()) {
+            final long period = periodNanos;
+            long deadline = previous + period;
+            long now = System.nanoTime();
+            if (now < deadline) {
+                /* Re-evaluated after waking, the rate may have changed meanwhile */
+                LockSupport.parkNanos(this, deadline - now);
+                continue;
+            }
+
+            /* Skip whole periods that have already been missed */
+            final long behind = (now - deadline) / period;
+            if (behind > 0) {
+                missedTicks += behind;
+                deadline += behind * period;
+            }
+
+            final long late = now - deadline;
+            lastLateNanos = late;
+            if (late > maxLateNanos) {
+                maxLateNanos = late;
+            }
+            ++ticks;
+            listener.onTick(late);
+            previous = deadline;
+        }
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getMissedTicks() {
+        return missedTicks;
+    }
+
+    public long getLastLateNanos() {
+        return lastLateNanos;
+    }
+
+    public long getMaxLateNanos() {
+        return maxLateNanos;
+    }
+}
@@ -0,0 +1,210 @@
+package com.statictomato.apps.rovercontroller;
+
+/**
+ * Turns the stick positions into the signed wheel values of a drive command,
+ * through the lookup tables of a Profile.
+ *
+ * In tank mode each stick's Y drives its own wheel. In arcade mode the left
+ * stick alone drives: its Y is the throttle and its X the turn, added to the
+ * left wheel and taken from the right one, saturating at full speed.
+ *
+ * A Profile holds everything precomputed when it is made: the deadzone and
+ * expo curve of each stick step, and the trimmed and clamped speed of each
+ * mixed value for either wheel. Mixing is then a float to step conversion per
+ * axis and a few array reads. Profiles never change, switching is a single
+ * volatile write, so it may happen at any time from any thread and each mix
+ * uses either the old or the new profile throughout.
+ *
+ * Sticks shaped by their source already, as by a GamepadMapper, go through
+ * mixShaped() instead, which keeps the mode and trim of the profile but not
+ * its deadzone and curve, so they are shaped only once.
+ */
+public class DriveMixer {
+
+    // Drive modes
+    public static final int MODE_TANK = 0;
+    public static final int MODE_ARCADE = 1;
+
+    public static final int MAX_SPEED = 255;
+
+    /* Steps of a stick from the center to either end */
+    public static final int RESOLUTION = 512;
+
+    /* Offset of a zero mixed speed into the wheel tables */
+    private static final int MIXED_OFFSET = 2 * MAX_SPEED;
+
+    /* Linear throttle and turn for each stick step, for sticks shaped already */
+    private static final short[] LINEAR_THROTTLE = new short[2 * RESOLUTION + 1];
+    private static final short[] LINEAR_TURN = new short[2 * RESOLUTION + 1];
+
+    static {
+        for(int step = -RESOLUTION; step <= RESOLUTION; ++step) {
+            final float speed = MAX_SPEED * step / (float) RESOLUTION;
+            LINEAR_THROTTLE[step + RESOLUTION] = (short) -Profile.round(speed);
+            LINEAR_TURN[step + RESOLUTION] = (short) Profile.round(speed);
+        }
+    }
+
+    /**
+     * Tank mode with the linear response of the former fixed mixing.
+     */
+    public static final Profile TANK = new Profile(MODE_TANK, 0, 0, 1, 1);
+
+    /**
+     * Mixing mode and curves, with their lookup tables.
+     */
+    public static final class Profile {
+
+        private final int mode;
+        private final float deadzone;
+        private final float expo;
+        private final float leftTrim;
+        private final float rightTrim;
+
+        /* Wheel speed forward for each step of a stick's Y, which points downwards */
+        private final short[] throttle = new short[2 * RESOLUTION + 1];
+        /* Turn to the right for each step of a stick's X */
+        private final short[] turn = new short[2 * RESOLUTION + 1];
+        /* Wheel values for each mixed speed, trimmed and clamped */
+        private final short[] left = new short[2 * MIXED_OFFSET + 1];
+        private final short[] right = new short[2 * MIXED_OFFSET + 1];
+
+        /**
+         * @param deadzone  share of the stick travel around the center that reads 0, 0 to below 1.
+         * @param expo      0 for a linear response up to 1 for a cubic one, see GamepadMapper.shape().
+         * @param leftTrim  scale of the left wheel, 0 to 1, to even out a rover that pulls to one side.
+         * @param rightTrim scale of the right wheel.
+         */
+        public Profile(int mode, float deadzone, float expo, float leftTrim, float rightTrim) {
+            if(mode != MODE_TANK && mode != MODE_ARCADE) {
+                throw new IllegalArgumentException("Unknown drive mode: " + mode);
+            }
+            if(deadzone < 0 || deadzone >= 1 || expo < 0 || expo > 1) {
+                throw new IllegalArgumentException("Invalid curve: " + deadzone + ", " + expo);
+            }
+            if(leftTrim < 0 || leftTrim > 1 || rightTrim < 0 || rightTrim > 1) {
+                throw new IllegalArgumentException("Invalid trim: " + leftTrim + ", " + rightTrim);
+            }
+            this.mode = mode;
+            this.deadzone = deadzone;
+            this.expo = expo;
+            this.leftTrim = leftTrim;
+            this.rightTrim = rightTrim;
+
+            for(int step = -RESOLUTION; step <= RESOLUTION; ++step) {
+                final float speed = MAX_SPEED * GamepadMapper.shape(step / (float) RESOLUTION, deadzone, expo);
+                /* Stick up drives forward */
+                throttle[step + RESOLUTION] = (short) -round(speed);
+                turn[step + RESOLUTION] = (short) round(speed);
+            }
+            for(int mixed = -MIXED_OFFSET; mixed <= MIXED_OFFSET; ++mixed) {
+                final int speed = Math.max(-MAX_SPEED, Math.min(MAX_SPEED, mixed));
+                left[mixed + MIXED_OFFSET] = (short) round(speed * leftTrim);
+                right[mixed + MIXED_OFFSET] = (short) round(speed * rightTrim);
+            }
+        }
+
+        /* Half away from zero, so both directions drive alike */
+        private static int round(float value) {
+            return value < 0 ? -Math.round(-value) : Math.round(value);
+        }
+
+        public int getMode() {
+            return mode;
+        }
+
+        public float getDeadzone() {
+            return deadzone;
+        }
+
+        public float getExpo() {
+            return expo;
+        }
+
+        public float getLeftTrim() {
+            return leftTrim;
+        }
+
+        public float getRightTrim() {
+            return rightTrim;
+        }
+    }
+
+    private volatile Profile profile;
+
+    public DriveMixer() {
+        this(TANK);
+    }
+
+    public DriveMixer(Profile profile) {
+        setProfile(profile);
+    }
+
+    /**
+     * Mix with the profile from the next call on.
+     */
+    public void setProfile(Profile profile) {
+        if(profile == null) {
+            throw new IllegalArgumentException("Profile must not be null");
+        }
+        this.profile = profile;
+    }
+
+    public Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Mix the sticks, -1 to 1 with Y downwards, into the wheel values.
+     *
+     * @return both wheel values, unpack them with left() and right().
+     */
+    public int mix(float leftX, float leftY, float rightX, float rightY) {
+        final Profile p = profile;
+        return mix(p, p.throttle, p.turn, leftX, leftY, rightX, rightY);
+    }
+
+    /**
+     * Mix sticks whose deadzone and curve were applied already, linearly
+     * through the mode and trim of the profile.
+     *
+     * @return both wheel values, unpack them with left() and right().
+     */
+    public int mixShaped(float leftX, float leftY, float rightX, float rightY) {
+        return mix(profile, LINEAR_THROTTLE, LINEAR_TURN, leftX, leftY, rightX, rightY);
+    }
+
+    private static int mix(Profile p, short[] throttles, short[] turns,
+                           float leftX, float leftY, float rightX, float rightY) {
+        if(p.mode == MODE_ARCADE) {
+            final int throttle = throttles[step(leftY)];
+            final int turn = turns[step(leftX)];
+            return pack(p.left[throttle + turn + MIXED_OFFSET], p.right[throttle - turn + MIXED_OFFSET]);
+        }
+        return pack(p.left[throttles[step(leftY)] + MIXED_OFFSET], p.right[throttles[step(rightY)] + MIXED_OFFSET]);
+    }
+
+    /* Table index of the stick position, clamped to the ends */
+    private static int step(float position) {
+        final int step = (int) (position * RESOLUTION + (position < 0 ? -0.5f : 0.5f));
+        if(step < -RESOLUTION) {
+            return 0;
+        }
+        if(step > RESOLUTION) {
+            return 2 * RESOLUTION;
+        }
+        return step + RESOLUTION;
+    }
+
+    public static int pack(int left, int right) {
+        return (left << 16) | (right & 0xFFFF);
+    }
+
+    public static int left(int wheels) {
+        return wheels >> 16;
+    }
+
+    public static int right(int wheels) {
+        return (short) wheels;
+    }
+}
@@ -0,0 +1,60 @@
+package com.statictomato.apps.rovercontroller;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drive state shared between the touch and the send paths.
+ *
+ * Both signed wheel values and a version number are packed into a single word that
+ * is published atomically, so a reader always sees a consistent snapshot without
+ * taking a lock. The left wheel value is kept in bits 48-63, the right wheel value
+ * in bits 32-47 and the version, incremented on every update, in bits 0-31.
+ */
+public class DriveState {
+
+    private final AtomicLong word = new AtomicLong();
+
+    /**
+     * Current snapshot, unpack it with left(), right() and version().
+     */
+    public long get() {
+        return word.get();
+    }
+
+    public void set(int left, int right) {
+        long current;
+        do {
+            current = word.get();
+        } while (!word.compareAndSet(current, pack(left, right, version(current) + 1)));
+    }
+
+    public void setLeft(int left) {
+        long current;
+        do {
+            current = word.get();
+        } while (!word.compareAndSet(current, pack(left, right(current), version(current) + 1)));
+    }
+
+    public void setRight(int right) {
+        long current;
+        do {
+            current = word.get();
+        } while (!word.compareAndSet(current, pack(left(current), right, version(current) + 1)));
+    }
+
+    public static long pack(int left, int right, int version) {
+        return ((long) (left & 0xFFFF) << 48) | ((long) (right & 0xFFFF) << 32) | (version & 0xFFFFFFFFL);
+    }
+
+    public static int left(long state) {
+        return (short) (state >> 48);
+    }
+
+    public static int right(long state) {
+        return (short) (state >> 32);
+    }
+
+    public static int version(long state) {
+        return (int) state;
+    }
+}
@@ -0,0 +1,236 @@
+package com.statictomato.apps.rovercontroller;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Both control sticks in one view, the left one in the left half and the right
+ * one in the right half.
+ *
+ * Every touch event is walked once for all pointers, and both sticks are
+ * reported together in a single callback, so the drive state never holds one
+ * side updated and the other stale. That is also one dispatch and one callback
+ * per event instead of one for each stick. The base and the hat are sprites
+ * of their size from the SpriteCache, and a move only invalidates the area the
+ * hats covered before and after it.
+ */
+public class DualStickView extends View {
+
+    private DualStickListener listener;
+
+    private Bitmap base;
+    private Bitmap hat;
+
+    private final StickTracker left = new StickTracker();
+    private final StickTracker right = new StickTracker();
+    private final Rect leftDirty = new Rect();
+    private final Rect rightDirty = new Rect();
+
+    public DualStickView(Context context) {
+        super(context);
+        init(context);
+    }
+
+    public DualStickView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init(context);
+    }
+
+    public DualStickView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        init(context);
+    }
+
+    private void init(Context context) {
+        /* Get context */
+        if (context instanceof DualStickListener) {
+            listener = (DualStickListener) context;
+        } else {
+            throw new RuntimeException(context.toString()
+                    + " must implement DualStickListener");
+        }
+    }
+
+    public interface DualStickListener {
+        /**
+         * Both sticks, -1 to 1, Y downwards.
+         *
+         * @param eventTime time of the touch event, in the SystemClock.uptimeMillis() time base.
+         */
+        void onSticksMoved(float leftX, float leftY, float rightX, float rightY, long eventTime);
+    }
+
+    /**
+     * Smooth the touch with a TouchFilter per stick, predicting it the given time ahead.
+     */
+    public void setSmoothing(boolean smoothing, long predictionMillis) {
+        left.setFilter(smoothing ? new TouchFilter(TouchFilter.DEFAULT_MIN_CUTOFF,
+                TouchFilter.DEFAULT_BETA, predictionMillis) : null);
+        right.setFilter(smoothing ? new TouchFilter(TouchFilter.DEFAULT_MIN_CUTOFF,
+                TouchFilter.DEFAULT_BETA, predictionMillis) : null);
+    }
+
+    /**
+     * Drag the stick through every sample of the pointer in a move event, the
+     * ones batched since the last event first.
+     */
+    static void drag(StickTracker stick, MotionEvent motionEvent, int pIndex) {
+        final int history = motionEvent.getHistorySize();
+        for(int h = 0; h < history; ++h) {
+            stick.drag(motionEvent.getHistoricalX(pIndex, h), motionEvent.getHistoricalY(pIndex, h),
+                    TimeUnit.MILLISECONDS.toNanos(motionEvent.getHistoricalEventTime(h)));
+        }
+        stick.drag(motionEvent.getX(pIndex), motionEvent.getY(pIndex),
+                TimeUnit.MILLISECONDS.toNanos(motionEvent.getEventTime()));
+    }
+
+    static void drawBase(Canvas canvas, Bitmap base, StickTracker stick) {
+        if(base != null) {
+            final float baseRadius = stick.getBaseRadius();
+            canvas.drawBitmap(base, stick.getCenterX() - baseRadius, stick.getCenterY() - baseRadius, null);
+        }
+    }
+
+    static void drawHat(Canvas canvas, Bitmap hat, StickTracker stick) {
+        if(hat != null) {
+            final float hatRadius = stick.getHatRadius();
+            canvas.drawBitmap(hat, stick.getHatCenterX() - hatRadius, stick.getHatCenterY() - hatRadius, null);
+        }
+    }
+
+    /**
+     * Grow the rect by the area the hat covers now, a pixel wider for rounding.
+     */
+    static void addHat(Rect dirty, StickTracker stick) {
+        final float hatCenterX = stick.getHatCenterX();
+        final float hatCenterY = stick.getHatCenterY();
+        final float hatRadius = stick.getHatRadius() + 1;
+        dirty.union((int)(hatCenterX - hatRadius),(int) (hatCenterY - hatRadius),
+                (int)(hatCenterX + hatRadius) + 1,(int)(hatCenterY + hatRadius) + 1);
+    }
+
+    /* For the rendering benchmark */
+    StickTracker getLeftStick() {
+        return left;
+    }
+
+    StickTracker getRightStick() {
+        return right;
+    }
+
+    Rect getLeftDirty() {
+        return leftDirty;
+    }
+
+    Rect getRightDirty() {
+        return rightDirty;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        /* Each stick in a square against its edge of the view */
+        final int size = Math.min(w/2, h);
+        left.setGeometry(size/2, h/2, size);
+        right.setGeometry(w - size/2, h/2, size);
+        /* Both sticks have the same size and share the sprites */
+        SpriteCache sprites = SpriteCache.getInstance();
+        Resources r = getResources();
+        base = sprites.get(r, R.drawable.joystick_base, (int)(2 * left.getBaseRadius()));
+        hat = sprites.get(r, R.drawable.joystick_hat, (int)(2 * left.getHatRadius()));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        drawBase(canvas, base, left);
+        drawBase(canvas, base, right);
+        drawHat(canvas, hat, left);
+        drawHat(canvas, hat, right);
+    }
+
+    /* The stick on the side of the view the point is in */
+    private StickTracker stickAt(float x) {
+        return x < getWidth()/2 ? left : right;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent motionEvent) {
+        boolean moved = false;
+        /* Where the hats were, to redraw along with where they go */
+        leftDirty.setEmpty();
+        addHat(leftDirty, left);
+        rightDirty.setEmpty();
+        addHat(rightDirty, right);
+        final float leftX = left.getHatCenterX();
+        final float leftY = left.getHatCenterY();
+        final float rightX = right.getHatCenterX();
+        final float rightY = right.getHatCenterY();
+        switch(motionEvent.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+            case MotionEvent.ACTION_POINTER_DOWN: {
+                final int pIndex = motionEvent.getActionIndex();
+                final float touchX = motionEvent.getX(pIndex);
+                stickAt(touchX).grab(motionEvent.getPointerId(pIndex), touchX, motionEvent.getY(pIndex));
+                break;
+            }
+
+            case MotionEvent.ACTION_MOVE: {
+                /* One pass over all pointers for both sticks */
+                final int pCount = motionEvent.getPointerCount();
+                for(int n = 0; n < pCount; ++n) {
+                    final int pId = motionEvent.getPointerId(n);
+                    if(pId == left.getPointerId()) {
+                        drag(left, motionEvent, n);
+                        moved = true;
+                    } else if(pId == right.getPointerId()) {
+                        drag(right, motionEvent, n);
+                        moved = true;
+                    } else {
+                        /* A pointer sliding onto a free hat grabs it */
+                        final float touchX = motionEvent.getX(n);
+                        stickAt(touchX).grab(pId, touchX, motionEvent.getY(n));
+                    }
+                }
+                break;
+            }
+
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_POINTER_UP: {
+                final int pId = motionEvent.getPointerId(motionEvent.getActionIndex());
+                moved = left.release(pId) | right.release(pId);
+                break;
+            }
+
+            case MotionEvent.ACTION_CANCEL: {
+                moved = left.isActive() || right.isActive();
+                left.release();
+                right.release();
+                break;
+            }
+        }
+
+        if(moved) {
+            listener.onSticksMoved(left.getPercentX(), left.getPercentY(),
+                    right.getPercentX(), right.getPercentY(), motionEvent.getEventTime());
+            /* Only around the hats that moved */
+            if(left.getHatCenterX() != leftX || left.getHatCenterY() != leftY) {
+                addHat(leftDirty, left);
+                invalidate(leftDirty);
+            }
+            if(right.getHatCenterX() != rightX || right.getHatCenterY() != rightY) {
+                addHat(rightDirty, right);
+                invalidate(rightDirty);
+            }
+        }
+        return true;
+    }
+}
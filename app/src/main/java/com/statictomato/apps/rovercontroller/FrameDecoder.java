@@ -0,0 +1,209 @@
+package com.statictomato.apps.rovercontroller;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming decoder for start/end delimited frames.
+ *
+ * Incoming bytes are read in bulk into a reusable ring buffer and scanned
+ * incrementally, so a frame may be split over several reads and several frames
+ * may arrive in a single read. Completed frames are copied into a reusable frame
+ * buffer and handed to the FrameListener; nothing is allocated per frame.
+ *
+ * A frame whose first byte has the high bit set is a binary frame (see CommandCodec).
+ * Its second byte gives the length of the payload, which is followed by one check
+ * byte and the end delimiter. Binary frames are assembled by length rather than by
+ * scanning for the delimiters, so their payload may contain any byte value.
+ *
+ * This class is not thread safe, it is meant to be driven by a single reader thread.
+ */
+public class FrameDecoder {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int MAX_FRAME_LENGTH = 512;
+
+    public interface FrameListener {
+        /**
+         * Called for every complete frame. The frame array is reused,
+         * so its content is only valid for the duration of the call.
+         */
+        void onFrame(byte[] frame, int length);
+    }
+
+    private final byte start;
+    private final byte end;
+    private final FrameListener listener;
+
+    /* Ring buffer, head and tail are free running and masked on access */
+    private final byte[] ring;
+    private final int mask;
+    private int head;
+    private int tail;
+
+    /* Frame being assembled */
+    private final byte[] frame;
+    private int frameLength;
+    private boolean inFrame;
+    private int binaryLength; // expected length of a binary frame, -1 for delimited frames
+
+    /* Statistics */
+    private long framesDecoded;
+    private long framesDropped;
+    private long bytesDiscarded;
+
+    public FrameDecoder(char start, char end, FrameListener listener) {
+        this(start, end, DEFAULT_CAPACITY, MAX_FRAME_LENGTH, listener);
+    }
+
+    /**
+     * @param capacity size of the ring buffer, rounded up to a power of two.
+     * @param maxFrameLength longest frame payload accepted, longer frames are dropped.
+     */
+    public FrameDecoder(char start, char end, int capacity, int maxFrameLength, FrameListener listener) {
+        if (capacity <= 0 || maxFrameLength <= 0) {
+            throw new IllegalArgumentException("Capacity and frame length must be positive");
+        }
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must not be null");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.start = (byte) start;
+        this.end = (byte) end;
+        this.listener = listener;
+        this.ring = new byte[size];
+        this.mask = size - 1;
+        this.frame = new byte[maxFrameLength];
+        reset();
+    }
+
+    /**
+     * Drop any buffered bytes and partially assembled frame.
+     */
+    public void reset() {
+        head = 0;
+        tail = 0;
+        frameLength = 0;
+        inFrame = false;
+        binaryLength = -1;
+    }
+
+    /**
+     * Perform a single bulk read from the stream into the ring buffer and decode
+     * every frame that has been completed by it. Blocks if the stream does.
+     *
+     * @return the number of bytes read, or -1 if the end of the stream was reached.
+     */
+    public int readFrom(InputStream in) throws IOException {
+        final int index = tail & mask;
+        final int free = ring.length - (tail - head);
+        final int contiguous = Math.min(free, ring.length - index);
+        final int n = in.read(ring, index, contiguous);
+        if (n > 0) {
+            tail += n;
+            decode();
+        }
+        return n;
+    }
+
+    /**
+     * Decode the given bytes, as if they had been read from a stream.
+     */
+    public void feed(byte[] data, int offset, int length) {
+        while (length > 0) {
+            final int index = tail & mask;
+            final int free = ring.length - (tail - head);
+            final int n = Math.min(length, Math.min(free, ring.length - index));
+            System.arraycopy(data, offset, ring, index, n);
+            tail += n;
+            offset += n;
+            length -= n;
+            decode();
+        }
+    }
+
+    /**
+     * Scan all buffered bytes, assembling frames and delivering the completed ones.
+     */
+    private void decode() {
+        while (head != tail) {
+            final byte b = ring[head & mask];
+            ++head;
+            if (!inFrame) {
+                if (b == start) {
+                    inFrame = true;
+                    frameLength = 0;
+                    binaryLength = -1;
+                } else {
+                    ++bytesDiscarded;
+                }
+            } else if (binaryLength >= 0) {
+                decodeBinary(b);
+            } else if (frameLength == 0 && (b & 0x80) != 0) {
+                /* Binary frame, type and length byte are needed before the length is known */
+                frame[frameLength++] = b;
+                binaryLength = 2;
+            } else if (b == end) {
+                inFrame = false;
+                ++framesDecoded;
+                listener.onFrame(frame, frameLength);
+            } else if (b == start) {
+                /* The end of the previous frame was lost, resynchronise on this start */
+                ++framesDropped;
+                bytesDiscarded += frameLength + 1;
+                frameLength = 0;
+            } else if (frameLength == frame.length) {
+                /* Frame too long, drop it and hunt for the next start */
+                inFrame = false;
+                ++framesDropped;
+                bytesDiscarded += frameLength + 2;
+            } else {
+                frame[frameLength++] = b;
+            }
+        }
+    }
+
+    private void decodeBinary(byte b) {
+        if (frameLength < binaryLength) {
+            frame[frameLength++] = b;
+            if (frameLength == 2) {
+                /* Type, length, payload and check byte */
+                binaryLength = (b & 0xFF) + 3;
+                if (binaryLength > frame.length) {
+                    inFrame = false;
+                    ++framesDropped;
+                    bytesDiscarded += frameLength + 1;
+                }
+            }
+        } else if (b == end) {
+            inFrame = false;
+            ++framesDecoded;
+            listener.onFrame(frame, frameLength);
+        } else {
+            /* Length or data corrupted, resynchronise on this byte if it is a start */
+            ++framesDropped;
+            bytesDiscarded += frameLength + 1;
+            inFrame = b == start;
+            frameLength = 0;
+            binaryLength = -1;
+            if (!inFrame) {
+                ++bytesDiscarded;
+            }
+        }
+    }
+
+    public long getFramesDecoded() {
+        return framesDecoded;
+    }
+
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+
+    public long getBytesDiscarded() {
+        return bytesDiscarded;
+    }
+}
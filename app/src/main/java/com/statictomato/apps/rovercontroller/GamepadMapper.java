@@ -0,0 +1,143 @@
+package com.statictomato.apps.rovercontroller;
+
+/**
+ * Maps a hardware gamepad onto the same inputs as the touch controls: the two
+ * sticks, -1 to 1 with Y downwards as reported by DualStickView, and the
+ * CommandCodec action buttons.
+ *
+ * Each stick axis is read from a device axis and shaped by its own deadzone and
+ * curve. Inside the deadzone the axis is 0, beyond it the rest of the travel is
+ * stretched back to the full range, so there is no jump at its edge. The curve
+ * is the usual expo, a blend of the linear and the cubic response, which gives
+ * finer control around the center at 0 < expo <= 1. The values are fully shaped,
+ * mix them with DriveMixer.mixShaped() so the drive profile does not shape them
+ * again.
+ *
+ * The device axes and key codes are those of MotionEvent and KeyEvent, given by
+ * the caller, so it is free of Android classes and runs on the JVM.
+ */
+public class GamepadMapper {
+
+    // Stick axes
+    public static final int LEFT_X = 0;
+    public static final int LEFT_Y = 1;
+    public static final int RIGHT_X = 2;
+    public static final int RIGHT_Y = 3;
+    public static final int AXIS_COUNT = 4;
+
+    public static final int UNMAPPED = -1;
+
+    /* Covers the rest position of most worn sticks */
+    public static final float DEFAULT_DEADZONE = 0.1f;
+    public static final float DEFAULT_EXPO = 0;
+
+    private final int[] sources = new int[AXIS_COUNT];
+    private final float[] deadzones = new float[AXIS_COUNT];
+    private final float[] expos = new float[AXIS_COUNT];
+    private final float[] values = new float[AXIS_COUNT];
+    private final int[] buttonKeys = new int[CommandCodec.BUTTON_COUNT];
+
+    public GamepadMapper() {
+        for(int axis = 0; axis < AXIS_COUNT; ++axis) {
+            sources[axis] = UNMAPPED;
+            deadzones[axis] = DEFAULT_DEADZONE;
+            expos[axis] = DEFAULT_EXPO;
+        }
+        for(int button = 0; button < CommandCodec.BUTTON_COUNT; ++button) {
+            buttonKeys[button] = UNMAPPED;
+        }
+    }
+
+    /**
+     * Read the stick axis from the device axis, UNMAPPED to leave it at 0.
+     */
+    public void setSource(int axis, int sourceAxis) {
+        sources[axis] = sourceAxis;
+        values[axis] = 0;
+    }
+
+    public int getSource(int axis) {
+        return sources[axis];
+    }
+
+    /**
+     * @param deadzone share of the travel around the center that reads 0, 0 to below 1.
+     */
+    public void setDeadzone(int axis, float deadzone) {
+        if(deadzone < 0 || deadzone >= 1) {
+            throw new IllegalArgumentException("Invalid deadzone: " + deadzone);
+        }
+        deadzones[axis] = deadzone;
+    }
+
+    public float getDeadzone(int axis) {
+        return deadzones[axis];
+    }
+
+    /**
+     * @param expo 0 for a linear response up to 1 for a cubic one.
+     */
+    public void setExpo(int axis, float expo) {
+        if(expo < 0 || expo > 1) {
+            throw new IllegalArgumentException("Invalid expo: " + expo);
+        }
+        expos[axis] = expo;
+    }
+
+    public float getExpo(int axis) {
+        return expos[axis];
+    }
+
+    /**
+     * Send the action button when the key is pressed, UNMAPPED for none.
+     */
+    public void setButtonKey(int button, int keyCode) {
+        buttonKeys[button] = keyCode;
+    }
+
+    /**
+     * The action button mapped to the key, or UNMAPPED.
+     */
+    public int buttonFor(int keyCode) {
+        for(int button = 0; button < CommandCodec.BUTTON_COUNT; ++button) {
+            if(buttonKeys[button] == keyCode) {
+                return button;
+            }
+        }
+        return UNMAPPED;
+    }
+
+    /**
+     * Take the raw value of the stick axis, -1 to 1, from its device axis.
+     *
+     * @return true if the shaped value changed.
+     */
+    public boolean update(int axis, float raw) {
+        final float value = shape(raw, deadzones[axis], expos[axis]);
+        if(value == values[axis]) {
+            return false;
+        }
+        values[axis] = value;
+        return true;
+    }
+
+    /**
+     * Shaped value of the stick axis, -1 to 1.
+     */
+    public float get(int axis) {
+        return values[axis];
+    }
+
+    /**
+     * Apply the deadzone and the expo curve to a raw axis value.
+     */
+    public static float shape(float raw, float deadzone, float expo) {
+        final float magnitude = Math.min(1, Math.abs(raw));
+        if(magnitude <= deadzone) {
+            return 0;
+        }
+        final float x = (magnitude - deadzone) / (1 - deadzone);
+        final float curved = (1 - expo) * x + expo * x * x * x;
+        return raw < 0 ? -curved : curved;
+    }
+}
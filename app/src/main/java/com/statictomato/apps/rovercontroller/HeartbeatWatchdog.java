@@ -0,0 +1,139 @@
+package com.statictomato.apps.rovercontroller;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Declares the link dead when nothing has been received for the timeout.
+ *
+ * Any frame received counts, telemetry as well as the echoed heartbeats that the
+ * WriterThread sends whenever it has been quiet for a third of the timeout, so a
+ * healthy link is never silent for longer than a heartbeat round trip. The time
+ * from the last frame received to the timeout firing is recorded as the detection
+ * time.
+ *
+ * The checks run on their own CommandScheduler, several times per timeout, so a
+ * dead link is detected at most a fraction of the timeout late.
+ *
+ * While the sending side is quiet for longer than the heartbeat interval on
+ * purpose, as when it only sends a low-rate keepalive the rover answers, it
+ * extends the timeout by as much with setExtension().
+ */
+public class HeartbeatWatchdog implements CommandScheduler.TickListener {
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 300;
+
+    /* Checks per timeout, bounds how late a dead link is detected */
+    private static final int CHECKS_PER_TIMEOUT = 6;
+
+    public interface Listener {
+        /**
+         * Called on the watchdog thread when the timeout expires, once per start().
+         *
+         * @param silentNanos time since the last frame was received.
+         */
+        void onLinkTimeout(long silentNanos);
+    }
+
+    private final Listener listener;
+    private final CommandScheduler scheduler;
+    private final LatencyHistogram detection = new LatencyHistogram();
+    private volatile long timeoutNanos;
+    private volatile long extensionNanos;
+    private volatile long lastReceivedNanos;
+    private volatile long timeouts;
+
+    public HeartbeatWatchdog(long timeoutMillis, Listener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must not be null");
+        }
+        this.listener = listener;
+        scheduler = new CommandScheduler(CommandScheduler.MIN_RATE, this);
+        setTimeout(timeoutMillis);
+    }
+
+    /**
+     * Set the timeout, 0 disables the watchdog and the heartbeats.
+     * Takes effect from the next start().
+     */
+    public void setTimeout(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Timeout must not be negative");
+        }
+        timeoutNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+        if (millis > 0) {
+            scheduler.setRate((int) (TimeUnit.SECONDS.toMillis(CHECKS_PER_TIMEOUT) / millis));
+        }
+    }
+
+    public long getTimeoutNanos() {
+        return timeoutNanos;
+    }
+
+    public boolean isEnabled() {
+        return timeoutNanos > 0;
+    }
+
+    /**
+     * Longest time the sending side may stay quiet before it sends a heartbeat,
+     * or 0 if disabled.
+     */
+    public long getHeartbeatIntervalNanos() {
+        return timeoutNanos / 3;
+    }
+
+    /**
+     * Allow the rover to be silent this much longer than the timeout. Takes
+     * effect right away.
+     */
+    public void setExtension(long nanos) {
+        extensionNanos = Math.max(0, nanos);
+    }
+
+    public long getExtensionNanos() {
+        return extensionNanos;
+    }
+
+    /**
+     * Start watching a new connection, counting it as alive from now.
+     */
+    public void start() {
+        lastReceivedNanos = System.nanoTime();
+        if (isEnabled()) {
+            scheduler.start();
+        }
+    }
+
+    public void stop() {
+        scheduler.stop();
+    }
+
+    /**
+     * Note that a frame was received. Called from the reading thread.
+     */
+    public void onReceived(long nanos) {
+        lastReceivedNanos = nanos;
+    }
+
+    @Override
+    public void onTick(long lateNanos) {
+        final long timeout = timeoutNanos;
+        final long silent = System.nanoTime() - lastReceivedNanos;
+        if (timeout > 0 && silent > timeout + extensionNanos) {
+            scheduler.stop();
+            ++timeouts;
+            detection.record(silent);
+            listener.onLinkTimeout(silent);
+        }
+    }
+
+    /**
+     * Time from the last frame received to the link being declared dead.
+     */
+    public LatencyHistogram getDetectionHistogram() {
+        return detection;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+}
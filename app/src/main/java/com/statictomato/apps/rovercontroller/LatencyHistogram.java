@@ -0,0 +1,114 @@
+package com.statictomato.apps.rovercontroller;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed memory histogram of latencies in nanoseconds.
+ *
+ * Values below 32 ns are counted exactly, larger values in log-linear buckets of
+ * 16 per power of two, so percentiles are accurate to about 6%. Recording is
+ * lock free and allocation free, and may happen from any thread concurrently with
+ * queries. Values above roughly 18 minutes are counted in the last bucket.
+ */
+public class LatencyHistogram {
+
+    private static final int LINEAR = 32;
+    private static final int SUB_BUCKETS = 16;
+    private static final int MAX_EXPONENT = 36;
+    private static final int BUCKETS = LINEAR + MAX_EXPONENT * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(index(nanos));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+        long current;
+        while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+            /* Retry */
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; ++i) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getMean() {
+        final long n = count.get();
+        return n == 0 ? 0 : sum.get() / n;
+    }
+
+    /**
+     * Value at the given percentile, 0 to 100, as the upper bound of its bucket.
+     * Returns 0 if nothing has been recorded.
+     */
+    public long getPercentile(double percentile) {
+        final long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        final long target = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            cumulative += counts.get(i);
+            if (cumulative >= target) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Append a one line summary in microseconds.
+     */
+    public void export(StringBuilder out) {
+        out.append(String.format(Locale.ENGLISH, "n=%d mean=%d p50=%d p99=%d p999=%d max=%d us",
+                getCount(), getMean() / 1000, getPercentile(50) / 1000,
+                getPercentile(99) / 1000, getPercentile(99.9) / 1000, getMax() / 1000));
+    }
+
+    static int index(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value) - 4;
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        return LINEAR + (exponent - 1) * SUB_BUCKETS + (int) ((value >> exponent) - SUB_BUCKETS);
+    }
+
+    static long upperBound(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        if (index == BUCKETS - 1) {
+            /* Everything too large for the other buckets */
+            return Long.MAX_VALUE;
+        }
+        final int exponent = (index - LINEAR) / SUB_BUCKETS + 1;
+        final long lower = (long) ((index - LINEAR) % SUB_BUCKETS + SUB_BUCKETS) << exponent;
+        return lower + (1L << exponent) - 1;
+    }
+}
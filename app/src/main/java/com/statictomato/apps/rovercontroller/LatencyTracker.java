@@ -0,0 +1,188 @@
+package com.statictomato.apps.rovercontroller;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Follows drive commands from the touch event to the rover's telemetry.
+ *
+ * The UI thread marks the input, the WriterThread tags every command it encodes
+ * with a sequence number and stamps it when it is written, and the reading thread
+ * matches the telemetry echoing the wheel values to the oldest command with those
+ * values. The round trip is timed from the encode, just before the write starts,
+ * as the answer can arrive before a blocking write returns. The rover answers
+ * commands in order, so commands skipped by a match were lost or corrupted and
+ * are counted as unanswered.
+ *
+ * All times are System.nanoTime(), which on Android runs on the same clock as
+ * SystemClock.uptimeMillis() and so as MotionEvent.getEventTime().
+ */
+public class LatencyTracker {
+
+    // Stages with a histogram each
+    public static final int STAGE_INPUT = 0;      // touch event to onSticksMoved
+    public static final int STAGE_QUEUE = 1;      // onSticksMoved to encode
+    public static final int STAGE_WRITE = 2;      // encode to written to the transport
+    public static final int STAGE_TO_WIRE = 3;    // touch event to written to the transport
+    public static final int STAGE_ROUND_TRIP = 4; // encode to the matching telemetry read
+    public static final int STAGE_COUNT = 5;
+
+    private static final String[] STAGE_NAMES = {
+            "input", "queue", "write", "touch to wire", "round trip"
+    };
+
+    /* Commands in flight, must be a power of 2 */
+    private static final int SLOTS = 256;
+    private static final int MASK = SLOTS - 1;
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGE_COUNT];
+
+    /* Input not yet picked up by an encoded command, 0 if none */
+    private final AtomicLong pendingTouch = new AtomicLong();
+    private final AtomicLong pendingMoved = new AtomicLong();
+
+    /* Commands by sequence, guarded by this */
+    private final int[] left = new int[SLOTS];
+    private final int[] right = new int[SLOTS];
+    private final long[] touched = new long[SLOTS];
+    private final long[] moved = new long[SLOTS];
+    private final long[] encoded = new long[SLOTS];
+    private long nextSequence;
+    private long oldestUnanswered;
+
+    private volatile long unanswered;
+    private volatile long unmatched;
+
+    public LatencyTracker() {
+        for (int i = 0; i < STAGE_COUNT; ++i) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public LatencyHistogram getHistogram(int stage) {
+        return histograms[stage];
+    }
+
+    public static String getStageName(int stage) {
+        return STAGE_NAMES[stage];
+    }
+
+    /**
+     * Mark input that will be carried by the next encoded command.
+     *
+     * @param touchNanos time of the touch event, or 0 if unknown.
+     * @param movedNanos time the input was handled.
+     */
+    public void markInput(long touchNanos, long movedNanos) {
+        /* Keep the oldest input not yet sent, it has waited longest */
+        pendingTouch.compareAndSet(0, touchNanos);
+        pendingMoved.compareAndSet(0, movedNanos);
+    }
+
+    /**
+     * Tag a command being encoded. Called from the writing thread only.
+     *
+     * @return the sequence to pass to onWritten().
+     */
+    public synchronized long onEncoded(int left, int right, long nanos) {
+        final long sequence = nextSequence++;
+        final int slot = (int) sequence & MASK;
+        if (sequence - oldestUnanswered >= SLOTS) {
+            /* Overwriting a command that was never answered */
+            ++oldestUnanswered;
+            ++unanswered;
+        }
+        this.left[slot] = left;
+        this.right[slot] = right;
+        touched[slot] = pendingTouch.getAndSet(0);
+        moved[slot] = pendingMoved.getAndSet(0);
+        encoded[slot] = nanos;
+        if (moved[slot] != 0) {
+            histograms[STAGE_QUEUE].record(nanos - moved[slot]);
+            if (touched[slot] != 0) {
+                histograms[STAGE_INPUT].record(moved[slot] - touched[slot]);
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * Stamp a command as written to the transport.
+     */
+    public synchronized void onWritten(long sequence, long nanos) {
+        if (nextSequence - sequence > SLOTS) {
+            /* Already overwritten */
+            return;
+        }
+        final int slot = (int) sequence & MASK;
+        histograms[STAGE_WRITE].record(nanos - encoded[slot]);
+        if (touched[slot] != 0) {
+            histograms[STAGE_TO_WIRE].record(nanos - touched[slot]);
+        }
+    }
+
+    /**
+     * Match telemetry reporting the wheel values to the command it answers.
+     *
+     * @return the round trip of that command, or -1 if none matched.
+     */
+    public synchronized long onTelemetry(int left, int right, long nanos) {
+        for (long sequence = oldestUnanswered; sequence < nextSequence; ++sequence) {
+            final int slot = (int) sequence & MASK;
+            if (this.left[slot] == left && this.right[slot] == right) {
+                final long roundTrip = nanos - encoded[slot];
+                histograms[STAGE_ROUND_TRIP].record(roundTrip);
+                unanswered += sequence - oldestUnanswered;
+                oldestUnanswered = sequence + 1;
+                return roundTrip;
+            }
+        }
+        ++unmatched;
+        return -1;
+    }
+
+    /**
+     * Give up on the commands in flight, as when the connection is replaced.
+     */
+    public synchronized void discardInFlight() {
+        unanswered += nextSequence - oldestUnanswered;
+        oldestUnanswered = nextSequence;
+    }
+
+    /**
+     * Commands never matched by telemetry.
+     */
+    public long getUnanswered() {
+        return unanswered;
+    }
+
+    /**
+     * Telemetry not matching any command in flight.
+     */
+    public long getUnmatched() {
+        return unmatched;
+    }
+
+    public void reset() {
+        for (LatencyHistogram h : histograms) {
+            h.reset();
+        }
+        synchronized (this) {
+            oldestUnanswered = nextSequence;
+            unanswered = 0;
+            unmatched = 0;
+        }
+    }
+
+    /**
+     * Append a report with a line per stage, in microseconds.
+     */
+    public void export(StringBuilder out) {
+        for (int i = 0; i < STAGE_COUNT; ++i) {
+            out.append(STAGE_NAMES[i]).append(": ");
+            histograms[i].export(out);
+            out.append('\n');
+        }
+        out.append("unanswered: ").append(unanswered)
+                .append(", unmatched: ").append(unmatched).append('\n');
+    }
+}
@@ -0,0 +1,129 @@
+package com.statictomato.apps.rovercontroller;
+
+import java.util.Locale;
+
+/**
+ * Running estimates of the link quality.
+ *
+ * Round trip and write times are smoothed like TCP's round trip estimator
+ * (RFC 6298), moving an eighth of the way to every new sample. The round trip
+ * variation moves a quarter of the way to each sample's distance from the
+ * smoothed round trip, and starts at half the first sample. The loss rate
+ * moves a sixteenth of the way to 1 for every command that went unanswered and
+ * to 0 for every command answered, so it reflects roughly the last few dozen
+ * commands. Stalls are counted, see BackpressureMonitor.
+ *
+ * Round trips are reported by the reading thread and writes by the writing
+ * threads, the estimates may be read from any thread.
+ */
+public class LinkQuality {
+
+    private static final int TIME_SHIFT = 3;       // gain 1/8
+    private static final int VARIATION_SHIFT = 2;  // gain 1/4
+    private static final double LOSS_GAIN = 1.0 / 16;
+
+    private volatile long roundTripNanos;
+    private volatile long roundTripVariationNanos;
+    private volatile long writeNanos;
+    private volatile double lossRate;
+    private volatile long stalls;
+    private long lastUnanswered = -1; // -1 until the first report
+
+    /**
+     * Report a command answered after the given round trip.
+     *
+     * @param unanswered the total of commands never answered so far, see
+     *                   LatencyTracker.getUnanswered(). Those since the last
+     *                   report count as lost.
+     */
+    public synchronized void onRoundTrip(long nanos, long unanswered) {
+        // RTTVAR first, from the distance to the old SRTT, then SRTT
+        final long srtt = roundTripNanos;
+        if (srtt == 0) {
+            roundTripVariationNanos = nanos / 2;
+        } else {
+            final long variation = roundTripVariationNanos;
+            roundTripVariationNanos = variation + ((Math.abs(srtt - nanos) - variation) >> VARIATION_SHIFT);
+        }
+        roundTripNanos = smooth(srtt, nanos);
+        double loss = lossRate;
+        // Also when the total went down, as after a reset of the tracker
+        final long lost = lastUnanswered < 0 ? 0 : Math.max(0, unanswered - lastUnanswered);
+        lastUnanswered = unanswered;
+        for (long i = 0; i < lost; ++i) {
+            loss += (1 - loss) * LOSS_GAIN;
+        }
+        loss -= loss * LOSS_GAIN;
+        lossRate = loss;
+    }
+
+    /**
+     * Report a write, including the flush.
+     */
+    public synchronized void onWrite(long nanos, boolean stalled) {
+        writeNanos = smooth(writeNanos, nanos);
+        if (stalled) {
+            ++stalls;
+        }
+    }
+
+    private static long smooth(long estimate, long sample) {
+        if (estimate == 0) {
+            return sample;
+        }
+        return estimate + ((sample - estimate) >> TIME_SHIFT);
+    }
+
+    /**
+     * Smoothed round trip, 0 until a command was answered.
+     */
+    public long getRoundTripNanos() {
+        return roundTripNanos;
+    }
+
+    /**
+     * Smoothed variation of the round trip, 0 until a command was answered.
+     */
+    public long getRoundTripVariationNanos() {
+        return roundTripVariationNanos;
+    }
+
+    /**
+     * Smoothed time a write blocks.
+     */
+    public long getWriteNanos() {
+        return writeNanos;
+    }
+
+    /**
+     * Fraction of the recent commands that went unanswered, 0 to 1.
+     */
+    public double getLossRate() {
+        return lossRate;
+    }
+
+    public long getStalls() {
+        return stalls;
+    }
+
+    /**
+     * Start over, as for a new connection. Commands unanswered before the next
+     * report do not count as lost.
+     */
+    public synchronized void reset() {
+        lastUnanswered = -1;
+        roundTripNanos = 0;
+        roundTripVariationNanos = 0;
+        writeNanos = 0;
+        lossRate = 0;
+        stalls = 0;
+    }
+
+    /**
+     * Append a one line summary, times in microseconds.
+     */
+    public void export(StringBuilder out) {
+        out.append(String.format(Locale.ENGLISH, "rtt=%d rttvar=%d write=%d us loss=%.1f%% stalls=%d",
+                getRoundTripNanos() / 1000, getRoundTripVariationNanos() / 1000, getWriteNanos() / 1000, getLossRate() * 100, getStalls()));
+    }
+}
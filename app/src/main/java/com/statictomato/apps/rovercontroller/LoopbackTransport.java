@@ -0,0 +1,213 @@
+package com.statictomato.apps.rovercontroller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * In-process transport, one end of a pair of crossed bounded pipes.
+ *
+ * Lets the SerialLink talk to a simulated rover in the same JVM without a radio.
+ * Writes block while the pipe is full, like a congested socket, and closing
+ * either end closes the connection for both.
+ */
+public class LoopbackTransport implements Transport {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final String name;
+    private final Pipe in;
+    private final Pipe out;
+    private final InputStream inStream;
+    private final OutputStream outStream;
+
+    private LoopbackTransport(String name, Pipe in, Pipe out) {
+        this.name = name;
+        this.in = in;
+        this.out = out;
+        this.inStream = new PipeInputStream(in);
+        this.outStream = new PipeOutputStream(out);
+    }
+
+    /**
+     * Create two connected ends, what is written to one can be read from the other.
+     */
+    public static LoopbackTransport[] createPair() {
+        return createPair(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of bytes each direction buffers before writes block.
+     */
+    public static LoopbackTransport[] createPair(int capacity) {
+        Pipe forward = new Pipe(capacity);
+        Pipe backward = new Pipe(capacity);
+        return new LoopbackTransport[] {
+                new LoopbackTransport("loopback", backward, forward),
+                new LoopbackTransport("loopback peer", forward, backward)
+        };
+    }
+
+    @Override
+    public void connect() throws IOException {
+        if (in.isClosed() || out.isClosed()) {
+            throw new IOException("Transport closed");
+        }
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return inStream;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return outStream;
+    }
+
+    @Override
+    public void close() {
+        in.close();
+        out.close();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Bounded blocking byte queue.
+     */
+    private static class Pipe {
+
+        private final byte[] buffer;
+        private int head;
+        private int count;
+        private boolean closed;
+
+        private Pipe(int capacity) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("Capacity must be positive");
+            }
+            buffer = new byte[capacity];
+        }
+
+        private synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (count == 0) {
+                if (closed) {
+                    return -1;
+                }
+                await();
+            }
+            final int n = Math.min(len, count);
+            final int first = Math.min(n, buffer.length - head);
+            System.arraycopy(buffer, head, b, off, first);
+            System.arraycopy(buffer, 0, b, off + first, n - first);
+            head = (head + n) % buffer.length;
+            count -= n;
+            notifyAll();
+            return n;
+        }
+
+        private synchronized void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                while (count == buffer.length && !closed) {
+                    await();
+                }
+                if (closed) {
+                    throw new IOException("Pipe closed");
+                }
+                final int tail = (head + count) % buffer.length;
+                final int n = Math.min(len, Math.min(buffer.length - count, buffer.length - tail));
+                System.arraycopy(b, off, buffer, tail, n);
+                count += n;
+                off += n;
+                len -= n;
+                notifyAll();
+            }
+        }
+
+        private synchronized int available() {
+            return count;
+        }
+
+        private synchronized boolean isClosed() {
+            return closed;
+        }
+
+        private synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+
+        private void await() throws InterruptedIOException {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    private static class PipeInputStream extends InputStream {
+
+        private final Pipe pipe;
+        private final byte[] single = new byte[1];
+
+        private PipeInputStream(Pipe pipe) {
+            this.pipe = pipe;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return pipe.read(b, off, len);
+        }
+
+        @Override
+        public int available() {
+            return pipe.available();
+        }
+
+        @Override
+        public void close() {
+            pipe.close();
+        }
+    }
+
+    private static class PipeOutputStream extends OutputStream {
+
+        private final Pipe pipe;
+        private final byte[] single = new byte[1];
+
+        private PipeOutputStream(Pipe pipe) {
+            this.pipe = pipe;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            single[0] = (byte) b;
+            write(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            pipe.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            pipe.close();
+        }
+    }
+}
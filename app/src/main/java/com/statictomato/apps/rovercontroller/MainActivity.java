@@ -1,48 +1,93 @@
 package com.statictomato.apps.rovercontroller;
 
+import android.annotation.TargetApi;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
 import android.content.ComponentName;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.ServiceConnection;
+import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Message;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.view.Choreographer;
+import android.view.InputDevice;
+import android.view.KeyEvent;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.MotionEvent;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
-public class MainActivity extends AppCompatActivity implements ControlStickView.ControlStickListener {
+public class MainActivity extends AppCompatActivity
+        implements DualStickView.DualStickListener, ActionButtonView.ActionButtonListener,
+        CommandScheduler.TickListener {
 
     // Intent request codes
     private static final int REQUEST_ENABLE_BT = 1;
     private static final int REQUEST_CONNECT_BT = 2;
 
-    private static final int PERIODIC_DELAY = 100;
+    private static final int DEFAULT_COMMAND_RATE = 10; // Hz
+
+    // Display frame before Choreographer, for rendering telemetry
+    private static final long FRAME_MILLIS = 16;
+
+    // How far ahead the stick input is predicted, about one display frame
+    private static final long PREDICTION_MILLIS = 16;
 
     private TextView textInfoLeft;
     private TextView textInfoRight;
+    private final char[] textLeft = new char[TelemetryText.MAX_LENGTH];
+    private final char[] textRight = new char[TelemetryText.MAX_LENGTH];
+
+    private final DriveState driveState;
+
+    // Drive profiles to pick from the menu
+    private static final DriveMixer.Profile PROFILE_TANK_EXPO =
+            new DriveMixer.Profile(DriveMixer.MODE_TANK, 0.05f, 0.5f, 1, 1);
+    private static final DriveMixer.Profile PROFILE_ARCADE =
+            new DriveMixer.Profile(DriveMixer.MODE_ARCADE, 0.05f, 0.3f, 1, 1);
+
+    private final DriveMixer mixer;
 
-    private int leftSpeed;
-    private int leftDirection;
-    private int rightSpeed;
-    private int rightDirection;
+    /* Latest stick positions, kept to mix both wheels from either stick */
+    private float stickLeftX;
+    private float stickLeftY;
+    private float stickRightX;
+    private float stickRightY;
+    /* Set by the gamepad, which shapes its sticks itself */
+    private boolean sticksShaped;
+
+    private final GamepadMapper gamepad;
+    private int gamepadDeviceId = -1;
+
+    private DualStickView dualStick;
+    private boolean smoothInput;
+    private boolean predictInput;
 
     private String connectedDeviceName;
 
     private MessageHandler handler;
 
-    private BluetoothSerialService bluetoothSerialService;
+    private final TelemetryRenderer telemetryRenderer;
 
-    private final BluetoothAdapter adapter;
+    /* Cleared on the UI thread while the scheduler thread may still tick, read it once into a local */
+    private volatile BluetoothSerialService bluetoothSerialService;
 
-    private final Object key = new Object();
+    private final CommandScheduler scheduler;
+
+    /* Follow the link's AdaptiveRate instead of a fixed rate */
+    private volatile boolean adaptiveRate;
+
+    private final BluetoothAdapter adapter;
 
     private ServiceConnection connection = new ServiceConnection() {
         @Override
@@ -51,6 +96,10 @@ public class MainActivity extends AppCompatActivity implements ControlStickView.
             bluetoothSerialService = binder.getService();
             bluetoothSerialService.setHandler(handler);
             bluetoothSerialService.start();
+            if(bluetoothSerialService.isAutoReconnect()) {
+                /* Back to the last rover without going through the device list */
+                bluetoothSerialService.reconnectLastDevice();
+            }
         }
 
         @Override
@@ -59,26 +108,31 @@ public class MainActivity extends AppCompatActivity implements ControlStickView.
         }
     };
 
-    private Runnable periodic = new Runnable() {
-        @Override
-        public void run() {
-            sendData();
-            handler.postDelayed(periodic,PERIODIC_DELAY);
-        }
-    };
-
 
     public MainActivity() {
         adapter = BluetoothAdapter.getDefaultAdapter();
 
         handler = new MessageHandler();
 
+        telemetryRenderer = new TelemetryRenderer();
+
+        scheduler = new CommandScheduler(DEFAULT_COMMAND_RATE, this);
+
         bluetoothSerialService = null;
 
-        leftSpeed = 0;
-        leftDirection = 0;
-        rightSpeed = 0;
-        rightDirection = 0;
+        driveState = new DriveState();
+
+        mixer = new DriveMixer();
+
+        gamepad = new GamepadMapper();
+        gamepad.setSource(GamepadMapper.LEFT_X, MotionEvent.AXIS_X);
+        gamepad.setSource(GamepadMapper.LEFT_Y, MotionEvent.AXIS_Y);
+        gamepad.setSource(GamepadMapper.RIGHT_X, MotionEvent.AXIS_Z);
+        gamepad.setSource(GamepadMapper.RIGHT_Y, MotionEvent.AXIS_RZ);
+        gamepad.setButtonKey(CommandCodec.BUTTON_A, KeyEvent.KEYCODE_BUTTON_A);
+        gamepad.setButtonKey(CommandCodec.BUTTON_B, KeyEvent.KEYCODE_BUTTON_B);
+        gamepad.setButtonKey(CommandCodec.BUTTON_X, KeyEvent.KEYCODE_BUTTON_X);
+        gamepad.setButtonKey(CommandCodec.BUTTON_Y, KeyEvent.KEYCODE_BUTTON_Y);
     }
 
     /**
@@ -104,39 +158,111 @@ public class MainActivity extends AppCompatActivity implements ControlStickView.
     }
 
     private void startPeriodicSending() {
-        leftSpeed = 0;
-        leftDirection = 0;
-        rightSpeed = 0;
-        rightDirection = 0;
+        driveState.set(0, 0);
 
-        periodic.run();
+        scheduler.start();
     }
 
     private void stopPeriodicSending() {
-        handler.removeCallbacks(periodic);
+        scheduler.stop();
     }
 
-    private void sendData() {
-        String data = "";
-        synchronized (key) {
-            data += leftDirection + "," + leftSpeed
-                    + "," + rightDirection + "," + rightSpeed;
+    @Override
+    public void onTick(long lateNanos) {
+        final BluetoothSerialService service = bluetoothSerialService;
+        if(adaptiveRate && service != null) {
+            int rate = service.getLink().getAdaptiveRate().update(System.nanoTime());
+            if(rate != scheduler.getRate()) {
+                scheduler.setRate(rate);
+            }
         }
-        if(bluetoothSerialService.getState() == BluetoothSerialService.STATE_CONNECTED) {
-            bluetoothSerialService.write(data);
+        sendData(service);
+    }
+
+    private void sendData(BluetoothSerialService service) {
+        long state = driveState.get();
+        if(service != null && service.getState() == BluetoothSerialService.STATE_CONNECTED) {
+            service.publishDrive(DriveState.left(state), DriveState.right(state));
         } else {
             stopPeriodicSending();
         }
     }
 
-    private void writeToScreen(String text) {
-        String[] s = text.split(",");
-        try {
-            textInfoLeft.setText("Direction: " + s[0] + ", Speed: " + String.format(Locale.ENGLISH, "%03d", Integer.parseInt(s[1])));
-            textInfoRight.setText("Direction: " + s[2] + ", Speed: " + String.format(Locale.ENGLISH, "%03d", Integer.parseInt(s[3])));
-        } catch (Exception e) {
-            /* Ignore... */
+    /**
+     * Renders the latest telemetry on the next display frame, once however many
+     * frames arrived meanwhile. Synced to vsync by Choreographer from Jelly Bean
+     * on, before that posted for the next 16 ms frame boundary.
+     */
+    private class TelemetryRenderer implements Runnable {
+
+        private VsyncCallback vsync;
+        private boolean scheduled;
+
+        void schedule() {
+            if(scheduled) {
+                return;
+            }
+            scheduled = true;
+            if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                if(vsync == null) {
+                    vsync = new VsyncCallback(this);
+                }
+                vsync.post();
+            } else {
+                handler.postDelayed(this, FRAME_MILLIS - SystemClock.uptimeMillis() % FRAME_MILLIS);
+            }
         }
+
+        void cancel() {
+            if(!scheduled) {
+                return;
+            }
+            scheduled = false;
+            if(vsync != null) {
+                vsync.remove();
+            } else {
+                handler.removeCallbacks(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            scheduled = false;
+            if(bluetoothSerialService != null) {
+                long values = bluetoothSerialService.getTelemetry().take();
+                showTelemetry(TelemetryCoalescer.left(values), TelemetryCoalescer.right(values));
+            }
+        }
+    }
+
+    /* Only loaded from Jelly Bean on, Choreographer is not there before */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class VsyncCallback implements Choreographer.FrameCallback {
+
+        private final Runnable render;
+
+        VsyncCallback(Runnable render) {
+            this.render = render;
+        }
+
+        void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void remove() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            render.run();
+        }
+    }
+
+    private void showTelemetry(int left, int right) {
+        /* Formatted into reused buffers, nothing is allocated per frame */
+        textInfoLeft.setText(textLeft, 0, TelemetryText.format(left, textLeft));
+        textInfoRight.setText(textRight, 0, TelemetryText.format(right, textRight));
     }
 
     @Override
@@ -145,6 +271,8 @@ public class MainActivity extends AppCompatActivity implements ControlStickView.
         setContentView(R.layout.activity_main);
         textInfoLeft = (TextView) findViewById(R.id.text_info_left);
         textInfoRight = (TextView) findViewById(R.id.text_info_right);
+        /* Only in landscape */
+        dualStick = (DualStickView) findViewById(R.id.dual_stick);
 
         /* If the adapter is null, then Bluetooth is not supported */
         BluetoothAdapter adapter = BluetoothAdapter.getDefaultAdapter();
@@ -169,12 +297,40 @@ public class MainActivity extends AppCompatActivity implements ControlStickView.
         return super.onCreateOptionsMenu(menu);
     }
 
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        /* The menu may be inflated again, as after a rotation, show the settings in use */
+        menu.findItem(adaptiveRate ? R.id.rate_adaptive : rateItem(scheduler.getRate())).setChecked(true);
+        menu.findItem(driveModeItem(mixer.getProfile())).setChecked(true);
+        menu.findItem(R.id.smooth_input).setChecked(smoothInput);
+        menu.findItem(R.id.predict_input).setChecked(predictInput);
+        final BluetoothSerialService service = bluetoothSerialService;
+        if(service != null) {
+            menu.findItem(R.id.send_on_change).setChecked(service.isChangeDriven());
+            menu.findItem(R.id.auto_reconnect).setChecked(service.isAutoReconnect());
+            menu.findItem(R.id.legacy_protocol).setChecked(
+                    service.getCommandFormat() == CommandCodec.FORMAT_LEGACY);
+        }
+        return super.onPrepareOptionsMenu(menu);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         switch (item.getItemId()) {
+            case R.id.emergency_stop: {
+                /* Keep the periodic commands from driving on */
+                driveState.set(0, 0);
+                if(bluetoothSerialService != null) {
+                    bluetoothSerialService.emergencyStop();
+                }
+                break;
+            }
             case R.id.disconnect: {
                 stopPeriodicSending();
                 bluetoothSerialService.stop();
+                /* Keep a late render from overwriting the reset text */
+                telemetryRenderer.cancel();
+                bluetoothSerialService.getTelemetry().cancel();
                 textInfoLeft.setText(R.string.default_left_text);
                 textInfoRight.setText(R.string.default_right_text);
                 break;
@@ -184,10 +340,159 @@ public class MainActivity extends AppCompatActivity implements ControlStickView.
                 startActivityForResult(intent, REQUEST_CONNECT_BT);
                 break;
             }
+            case R.id.rate_10:
+            case R.id.rate_20:
+            case R.id.rate_50:
+            case R.id.rate_100:
+            case R.id.rate_200: {
+                item.setChecked(true);
+                adaptiveRate = false;
+                scheduler.setRate(commandRate(item.getItemId()));
+                break;
+            }
+            case R.id.rate_adaptive: {
+                item.setChecked(true);
+                if(bluetoothSerialService != null) {
+                    /* Carry on from the current rate */
+                    bluetoothSerialService.getLink().getAdaptiveRate().reset(scheduler.getRate());
+                }
+                adaptiveRate = true;
+                break;
+            }
+            case R.id.drive_tank: {
+                item.setChecked(true);
+                setDriveProfile(DriveMixer.TANK);
+                break;
+            }
+            case R.id.drive_tank_expo: {
+                item.setChecked(true);
+                setDriveProfile(PROFILE_TANK_EXPO);
+                break;
+            }
+            case R.id.drive_arcade: {
+                item.setChecked(true);
+                setDriveProfile(PROFILE_ARCADE);
+                break;
+            }
+            case R.id.send_on_change: {
+                item.setChecked(!item.isChecked());
+                if(bluetoothSerialService != null) {
+                    bluetoothSerialService.setChangeDriven(item.isChecked());
+                }
+                break;
+            }
+            case R.id.smooth_input: {
+                item.setChecked(!item.isChecked());
+                smoothInput = item.isChecked();
+                applyInputFilter();
+                break;
+            }
+            case R.id.predict_input: {
+                item.setChecked(!item.isChecked());
+                predictInput = item.isChecked();
+                applyInputFilter();
+                break;
+            }
+            case R.id.legacy_protocol: {
+                item.setChecked(!item.isChecked());
+                if(bluetoothSerialService != null) {
+                    bluetoothSerialService.setCommandFormat(item.isChecked()
+                            ? CommandCodec.FORMAT_LEGACY : CommandCodec.FORMAT_BINARY);
+                }
+                break;
+            }
+            case R.id.auto_reconnect: {
+                item.setChecked(!item.isChecked());
+                if(bluetoothSerialService != null) {
+                    bluetoothSerialService.setAutoReconnect(item.isChecked());
+                }
+                break;
+            }
+            case R.id.latency_report: {
+                if(bluetoothSerialService != null) {
+                    showLatencyReport(bluetoothSerialService.getLink());
+                }
+                break;
+            }
         }
         return super.onOptionsItemSelected(item);
     }
 
+    private void applyInputFilter() {
+        if(dualStick != null) {
+            /* Predicting needs the smoothed speed */
+            dualStick.setSmoothing(smoothInput || predictInput, predictInput ? PREDICTION_MILLIS : 0);
+        }
+    }
+
+    private void showLatencyReport(SerialLink link) {
+        final LatencyTracker tracker = link.getLatencyTracker();
+        final BackpressureMonitor backpressure = link.getBackpressure();
+        final TelemetryCoalescer telemetry = bluetoothSerialService.getTelemetry();
+        StringBuilder report = new StringBuilder();
+        tracker.export(report);
+        backpressure.export(report);
+        link.getAdaptiveRate().export(report);
+        report.append('\n');
+        report.append("dead link detection: ");
+        link.getHeartbeatWatchdog().getDetectionHistogram().export(report);
+        report.append("\nreconnect: ");
+        link.getReconnectTimes().export(report);
+        report.append("\nemergency stop: ");
+        link.getStopTimes().export(report);
+        report.append("\nsend on change: ");
+        link.getChangeFilter().export(report);
+        report.append("\nbuttons: ");
+        link.getButtonTimes().export(report);
+        report.append(" skipped=").append(link.getSkippedButtons());
+        report.append("\ntelemetry: ");
+        telemetry.export(report);
+        report.append("\nsprites: ");
+        SpriteCache.getInstance().export(report);
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.latency_report)
+                .setMessage(report)
+                .setPositiveButton(android.R.string.ok, null)
+                .setNeutralButton(R.string.latency_reset, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        tracker.reset();
+                        backpressure.reset();
+                        telemetry.reset();
+                    }
+                })
+                .show();
+    }
+
+    private static int commandRate(int itemId) {
+        switch (itemId) {
+            case R.id.rate_20: return 20;
+            case R.id.rate_50: return 50;
+            case R.id.rate_100: return 100;
+            case R.id.rate_200: return 200;
+            default: return 10;
+        }
+    }
+
+    private static int rateItem(int rate) {
+        switch (rate) {
+            case 20: return R.id.rate_20;
+            case 50: return R.id.rate_50;
+            case 100: return R.id.rate_100;
+            case 200: return R.id.rate_200;
+            default: return R.id.rate_10;
+        }
+    }
+
+    private static int driveModeItem(DriveMixer.Profile profile) {
+        if(profile == PROFILE_TANK_EXPO) {
+            return R.id.drive_tank_expo;
+        } else if(profile == PROFILE_ARCADE) {
+            return R.id.drive_arcade;
+        }
+        return R.id.drive_tank;
+    }
+
     @Override
     public void onActivityResult(int requestCode, int resultCode, Intent data) {
         if(requestCode == REQUEST_ENABLE_BT && resultCode != RESULT_OK) {
@@ -204,34 +509,122 @@ public class MainActivity extends AppCompatActivity implements ControlStickView.
     }
 
     @Override
-    public void onControlStickMoved(float percentX, float percentY, int source) {
-        if(bluetoothSerialService.getState() != BluetoothSerialService.STATE_CONNECTED) {
+    public void onSticksMoved(float leftX, float leftY, float rightX, float rightY, long eventTime) {
+        moveSticks(leftX, leftY, rightX, rightY, eventTime, false);
+    }
+
+    private void moveSticks(float leftX, float leftY, float rightX, float rightY, long eventTime, boolean shaped) {
+        final BluetoothSerialService service = bluetoothSerialService;
+        if(service == null || service.getState() != BluetoothSerialService.STATE_CONNECTED) {
             return;
         }
-        synchronized (key) {
-            if (source == R.id.left_stick) {
-                if (percentY < 0) {
-                    leftSpeed = (int) (-255 * percentY);
-                    leftDirection = 0;
-                } else {
-                    leftSpeed = (int) (255 * percentY);
-                    leftDirection = 1;
-                }
-            } else if (source == R.id.right_stick) {
-                if (percentY < 0) {
-                    rightSpeed = (int) (-255 * percentY);
-                    rightDirection = 0;
-                } else {
-                    rightSpeed = (int) (255 * percentY);
-                    rightDirection = 1;
-                }
+        service.getLink().getLatencyTracker()
+                .markInput(TimeUnit.MILLISECONDS.toNanos(eventTime), System.nanoTime());
+        stickLeftX = leftX;
+        stickLeftY = leftY;
+        stickRightX = rightX;
+        stickRightY = rightY;
+        sticksShaped = shaped;
+        mixSticks();
+        if(service.isChangeDriven()) {
+            sendData(service);
+        }
+    }
+
+    @Override
+    public void onActionButton(int button, boolean pressed, long eventTime) {
+        final BluetoothSerialService service = bluetoothSerialService;
+        if(service == null || service.getState() != BluetoothSerialService.STATE_CONNECTED) {
+            return;
+        }
+        /* Sent on its own right away, timed from the touch */
+        service.publishButton(button, pressed, TimeUnit.MILLISECONDS.toNanos(eventTime));
+    }
+
+    /**
+     * Gamepad sticks, taken here before the view hierarchy sees them and fed
+     * into the drive state like the touch sticks. Only the latest sample of a
+     * batched event matters, the sticks are positions.
+     */
+    @Override
+    public boolean dispatchGenericMotionEvent(MotionEvent event) {
+        if((event.getSource() & InputDevice.SOURCE_JOYSTICK) != InputDevice.SOURCE_JOYSTICK
+                || event.getActionMasked() != MotionEvent.ACTION_MOVE) {
+            return super.dispatchGenericMotionEvent(event);
+        }
+        if(event.getDeviceId() != gamepadDeviceId) {
+            gamepadDeviceId = event.getDeviceId();
+            applyGamepadFlat(event.getDevice(), event.getSource());
+        }
+        boolean moved = false;
+        for(int axis = 0; axis < GamepadMapper.AXIS_COUNT; ++axis) {
+            final int source = gamepad.getSource(axis);
+            if(source != GamepadMapper.UNMAPPED) {
+                moved |= gamepad.update(axis, event.getAxisValue(source));
             }
         }
+        if(moved) {
+            moveSticks(gamepad.get(GamepadMapper.LEFT_X), gamepad.get(GamepadMapper.LEFT_Y),
+                    gamepad.get(GamepadMapper.RIGHT_X), gamepad.get(GamepadMapper.RIGHT_Y),
+                    event.getEventTime(), true);
+        }
+        return true;
+    }
+
+    /* Widen the deadzones to the noise the device reports for its sticks at rest */
+    private void applyGamepadFlat(InputDevice device, int source) {
+        for(int axis = 0; axis < GamepadMapper.AXIS_COUNT; ++axis) {
+            float deadzone = GamepadMapper.DEFAULT_DEADZONE;
+            final InputDevice.MotionRange range = device == null || gamepad.getSource(axis) == GamepadMapper.UNMAPPED
+                    ? null : device.getMotionRange(gamepad.getSource(axis), source);
+            if(range != null) {
+                deadzone = Math.min(0.5f, Math.max(deadzone, range.getFlat()));
+            }
+            gamepad.setDeadzone(axis, deadzone);
+        }
+    }
+
+    /**
+     * Gamepad buttons, sent like the action buttons on screen. Key repeats
+     * are not new presses.
+     */
+    @Override
+    public boolean dispatchKeyEvent(KeyEvent event) {
+        final int button = gamepad.buttonFor(event.getKeyCode());
+        if(button == GamepadMapper.UNMAPPED
+                || (event.getSource() & InputDevice.SOURCE_GAMEPAD) != InputDevice.SOURCE_GAMEPAD) {
+            return super.dispatchKeyEvent(event);
+        }
+        if(event.getAction() == KeyEvent.ACTION_DOWN && event.getRepeatCount() == 0) {
+            onActionButton(button, true, event.getEventTime());
+        } else if(event.getAction() == KeyEvent.ACTION_UP) {
+            onActionButton(button, false, event.getEventTime());
+        }
+        return true;
+    }
+
+    /* Both wheels in one update, a tick never sees one side stale */
+    private void mixSticks() {
+        final int wheels = sticksShaped
+                ? mixer.mixShaped(stickLeftX, stickLeftY, stickRightX, stickRightY)
+                : mixer.mix(stickLeftX, stickLeftY, stickRightX, stickRightY);
+        driveState.set(DriveMixer.left(wheels), DriveMixer.right(wheels));
+    }
+
+    /* Takes effect right away, the periodic sending carries on with the new mix */
+    private void setDriveProfile(DriveMixer.Profile profile) {
+        mixer.setProfile(profile);
+        if(bluetoothSerialService != null
+                && bluetoothSerialService.getState() == BluetoothSerialService.STATE_CONNECTED) {
+            mixSticks();
+        }
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
+        stopPeriodicSending();
+        telemetryRenderer.cancel();
         /* Disconnect from service */
         if(bluetoothSerialService != null) {
             unbindService(connection);
@@ -257,14 +650,35 @@ public class MainActivity extends AppCompatActivity implements ControlStickView.
                         case BluetoothSerialService.STATE_CONNECTED: {
                             String s = getString(R.string.title_connected_to, connectedDeviceName);
                             setStatus(s);
+                            final BluetoothSerialService service = bluetoothSerialService;
+                            if(adaptiveRate && service != null) {
+                                /* The new link's quality is unknown, start from the bottom */
+                                AdaptiveRate rate = service.getLink().getAdaptiveRate();
+                                rate.reset(rate.getMinRate());
+                                scheduler.setRate(rate.getRate());
+                            }
                             startPeriodicSending();
                             break;
                         }
+                        case BluetoothSerialService.STATE_DISCONNECTING: {
+                            setStatus(R.string.title_disconnecting);
+                            stopPeriodicSending();
+                            break;
+                        }
+                        case BluetoothSerialService.STATE_RECONNECTING: {
+                            /* Resumes from a standstill once connected again */
+                            setStatus(R.string.title_reconnecting);
+                            stopPeriodicSending();
+                            break;
+                        }
                     }
                     break;
                 }
-                case MessageConstants.MESSAGE_READ: {
-                    writeToScreen((String) msg.obj);
+                case MessageConstants.MESSAGE_TELEMETRY: {
+                    /* Unless the display was reset since */
+                    if(bluetoothSerialService != null && bluetoothSerialService.getTelemetry().isPending()) {
+                        telemetryRenderer.schedule();
+                    }
                     break;
                 }
                 case MessageConstants.MESSAGE_WRITE: {
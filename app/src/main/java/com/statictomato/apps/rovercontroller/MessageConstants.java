@@ -9,5 +9,6 @@ public interface MessageConstants {
     public static final int MESSAGE_WRITE = 3;
     public static final int MESSAGE_DEVICE_NAME = 4;
     public static final int MESSAGE_TOAST = 5;
+    public static final int MESSAGE_TELEMETRY = 6; // take the values from getTelemetry()
 
 }
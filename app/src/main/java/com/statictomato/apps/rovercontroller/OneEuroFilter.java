@@ -0,0 +1,96 @@
+package com.statictomato.apps.rovercontroller;
+
+/**
+ * The one euro filter (Casiez, Roussel and Vogel, CHI 2012), a low pass filter whose
+ * cutoff rises with the speed of the signal.
+ *
+ * Held still, the cutoff stays at the minimum and jitter is smoothed out; moved
+ * fast, the cutoff rises by beta per unit per second and the output keeps up
+ * with little lag. The speed is taken between raw samples, as in the authors'
+ * reference implementation, and itself smoothed at a fixed derivative cutoff.
+ * Timestamps may be irregular, as with batched touch samples.
+ */
+public class OneEuroFilter {
+
+    public static final double DEFAULT_DERIVATIVE_CUTOFF = 1.0; // Hz
+
+    /* Samples closer than this are taken as this far apart */
+    private static final double MIN_INTERVAL = 1e-4; // s
+
+    private final double minCutoff;
+    private final double beta;
+    private final double derivativeCutoff;
+
+    private boolean started;
+    private long lastNanos;
+    private double lastSample;
+    private double value;
+    private double derivative;
+
+    /**
+     * @param minCutoff cutoff in Hz when held still, lower smooths more.
+     * @param beta      cutoff increase per unit of speed, higher lags less.
+     */
+    public OneEuroFilter(double minCutoff, double beta) {
+        this(minCutoff, beta, DEFAULT_DERIVATIVE_CUTOFF);
+    }
+
+    public OneEuroFilter(double minCutoff, double beta, double derivativeCutoff) {
+        if (minCutoff <= 0 || beta < 0 || derivativeCutoff <= 0) {
+            throw new IllegalArgumentException("Invalid filter: " + minCutoff + ", " + beta + ", " + derivativeCutoff);
+        }
+        this.minCutoff = minCutoff;
+        this.beta = beta;
+        this.derivativeCutoff = derivativeCutoff;
+    }
+
+    /**
+     * Filter the next sample.
+     *
+     * @return the filtered value.
+     */
+    public double filter(double sample, long timeNanos) {
+        if (!started) {
+            started = true;
+            lastNanos = timeNanos;
+            lastSample = sample;
+            value = sample;
+            derivative = 0;
+            return value;
+        }
+        final double interval = Math.max(MIN_INTERVAL, (timeNanos - lastNanos) / 1e9);
+        lastNanos = timeNanos;
+
+        derivative += alpha(derivativeCutoff, interval) * ((sample - lastSample) / interval - derivative);
+        lastSample = sample;
+        final double cutoff = minCutoff + beta * Math.abs(derivative);
+        value += alpha(cutoff, interval) * (sample - value);
+        return value;
+    }
+
+    private static double alpha(double cutoff, double interval) {
+        final double tau = 1 / (2 * Math.PI * cutoff);
+        return 1 / (1 + tau / interval);
+    }
+
+    /**
+     * Last filtered value.
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Smoothed speed, units per second.
+     */
+    public double getDerivative() {
+        return derivative;
+    }
+
+    /**
+     * Forget the signal, the next sample passes unfiltered.
+     */
+    public void reset() {
+        started = false;
+    }
+}
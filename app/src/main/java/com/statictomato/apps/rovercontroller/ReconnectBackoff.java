@@ -0,0 +1,64 @@
+package com.statictomato.apps.rovercontroller;
+
+import java.util.Random;
+
+/**
+ * Delays between reconnect attempts.
+ *
+ * The first attempt is made right away, the following ones after an exponentially
+ * growing delay, capped at the maximum. Each delay is jittered between half and
+ * all of its value, so controllers that lost the same rover do not retry in step.
+ */
+public class ReconnectBackoff {
+
+    public static final long DEFAULT_INITIAL_MILLIS = 100;
+    public static final long DEFAULT_MAX_MILLIS = 5000;
+
+    private final Random random;
+    private volatile long initialMillis = DEFAULT_INITIAL_MILLIS;
+    private volatile long maxMillis = DEFAULT_MAX_MILLIS;
+    private int attempt;
+
+    public ReconnectBackoff() {
+        this(new Random());
+    }
+
+    public ReconnectBackoff(Random random) {
+        this.random = random;
+    }
+
+    public void setBounds(long initialMillis, long maxMillis) {
+        if (initialMillis <= 0 || maxMillis < initialMillis) {
+            throw new IllegalArgumentException("Invalid backoff bounds: " + initialMillis + ", " + maxMillis);
+        }
+        this.initialMillis = initialMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * Start over from an immediate attempt.
+     */
+    public synchronized void reset() {
+        attempt = 0;
+    }
+
+    /**
+     * Number of attempts since the last reset.
+     */
+    public synchronized int getAttempt() {
+        return attempt;
+    }
+
+    /**
+     * Delay before the next attempt.
+     */
+    public synchronized long nextDelayMillis() {
+        final int n = attempt++;
+        if (n == 0) {
+            return 0;
+        }
+        /* Doubling stops well before the shift overflows */
+        final long delay = Math.min(maxMillis, initialMillis << Math.min(n - 1, 30));
+        return delay / 2 + (long) (random.nextDouble() * (delay / 2 + 1));
+    }
+}
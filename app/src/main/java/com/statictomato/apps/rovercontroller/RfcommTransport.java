@@ -0,0 +1,105 @@
+package com.statictomato.apps.rovercontroller;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+
+/**
+ * Transport over a Bluetooth RFCOMM socket using the Serial Port Profile.
+ */
+public class RfcommTransport implements Transport {
+
+    /* The SPP (Serial Port Profile) UUID */
+    private static final UUID MY_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
+
+    private final BluetoothDevice device;
+    private volatile BluetoothSocket socket;
+    private volatile boolean closed;
+
+    public RfcommTransport(BluetoothDevice device) {
+        this.device = device;
+    }
+
+    /**
+     * Return a factory of transports to the device with their sockets prepared,
+     * so a reconnect goes straight to connecting.
+     */
+    public static Transport.Factory factory(final BluetoothDevice device) {
+        return new Transport.Factory() {
+            @Override
+            public Transport create() {
+                RfcommTransport transport = new RfcommTransport(device);
+                transport.prepare();
+                return transport;
+            }
+        };
+    }
+
+    public BluetoothDevice getDevice() {
+        return device;
+    }
+
+    /**
+     * Create the socket ahead of connect(). If that fails, connect() tries again.
+     */
+    public void prepare() {
+        try {
+            socket = device.createRfcommSocketToServiceRecord(MY_UUID);
+        } catch (IOException e) {
+            /* Ignore... */
+        }
+    }
+
+    @Override
+    public void connect() throws IOException {
+        // Get a BluetoothSocket to connect with the given BluetoothDevice.
+        if (socket == null) {
+            socket = device.createRfcommSocketToServiceRecord(MY_UUID);
+        }
+        if (closed) {
+            close();
+            throw new IOException("Transport closed");
+        }
+
+        // Cancel discovery because it otherwise slows down the connection.
+        // Always cancel discovery before connecting to remote device.
+        BluetoothAdapter.getDefaultAdapter().cancelDiscovery();
+
+        // Connect to the remote device through the socket. This call blocks
+        // until it succeeds or throws an exception.
+        socket.connect();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return socket.getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return socket.getOutputStream();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        BluetoothSocket s = socket;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException e) {
+                /* Ignore... */
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return device.getName();
+    }
+}
@@ -0,0 +1,921 @@
+package com.statictomato.apps.rovercontroller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Connection to a rover over a Transport.
+ *
+ * Runs the threads that connect, read the incoming frames and write the drive
+ * commands, and reports back through a Listener. It has no Android dependencies,
+ * the BluetoothSerialService runs it over RFCOMM, while tests and load tests can
+ * run it over a LoopbackTransport or a TcpTransport.
+ *
+ * While connected a HeartbeatWatchdog declares the link lost as soon as the rover
+ * has been silent for its timeout, rather than when a read or write finally fails,
+ * and a best-effort stop command is sent to the rover before the link is dropped.
+ *
+ * With auto reconnect enabled, a connection made through a Transport.Factory is
+ * re-established after it is lost, retrying with a ReconnectBackoff until it
+ * succeeds or stop() is called.
+ *
+ * An emergency stop takes the priority lane of the CommandMailbox: the WriterThread
+ * sends it at its next write, ahead of any other frame and discarding the drive
+ * command still waiting. The time from the request to the stop frame being
+ * written is recorded.
+ *
+ * Button presses and releases go through the event lane of the mailbox, each
+ * sent as its own frame at the WriterThread's next write, without waiting for
+ * the next drive command or being merged with the other edges. The time from
+ * the press to the frame being written is recorded apart from the drive
+ * commands' latency. The legacy format has no button frame, so there they are
+ * skipped and counted instead.
+ *
+ * Every write is timed by a BackpressureMonitor. When the transport stalls the
+ * drive commands are throttled for a while, and commands that have gone stale
+ * waiting are dropped rather than sent.
+ *
+ * The round trips, losses and write times feed a LinkQuality estimate, which an
+ * AdaptiveRate turns into a suggested command rate for the publisher to follow.
+ *
+ * Every connect() or reconnect attempt is a Connection with its own state, moving
+ * through
+ *
+ *   CONNECTING or RECONNECTING -> CONNECTED -> DISCONNECTING -> STANDBY
+ *
+ * by compare and set only, any step may also go straight to DISCONNECTING. The
+ * link's state is that of the current Connection, which is swapped atomically,
+ * so getState() and publishing never take a lock. A thread that loses a race
+ * simply finds its transition refused or its Connection no longer current, and
+ * backs off.
+ */
+public class SerialLink {
+
+    // Constants that indicate the current connection state
+    public static final int STATE_STANDBY = 0;       // we're doing nothing
+    public static final int STATE_CONNECTING = 1;    // now initiating an outgoing connection
+    public static final int STATE_CONNECTED = 2;     // now connected to a remote device
+    public static final int STATE_DISCONNECTING = 3; // now shutting down the connection
+    public static final int STATE_RECONNECTING = 4;  // re-establishing a lost connection
+
+    public interface Listener {
+        /**
+         * The state changed. Calls are serialised and the last one always
+         * reports the current state, but short-lived states may be skipped.
+         */
+        void onStateChanged(int state);
+
+        /**
+         * The connection was established to the named remote end.
+         */
+        void onConnected(String name);
+
+        /**
+         * A frame was received, see FrameDecoder.FrameListener. Heartbeats are
+         * not reported.
+         */
+        void onFrame(byte[] frame, int length);
+
+        /**
+         * A telemetry frame was received and decoded, on the reading thread,
+         * after onFrame(). The wheel values are signed as in publishDrive().
+         */
+        void onTelemetry(int left, int right);
+
+        void onConnectionFailed();
+
+        void onConnectionLost();
+    }
+
+    // Member fields
+    private final Listener listener;
+    private final AtomicReference<Connection> current = new AtomicReference<>();
+    private final AtomicReference<WriterThread> lastWriter = new AtomicReference<>();
+    private final CommandCodec codec;
+    private final CommandMailbox mailbox;
+    private final ChangeFilter changeFilter;
+    private final LatencyTracker latencyTracker;
+    private final HeartbeatWatchdog watchdog;
+    private final ReconnectBackoff backoff;
+    private final LatencyHistogram reconnectTimes;
+    private final LatencyHistogram stopTimes;
+    private final LatencyHistogram buttonTimes;
+    private final BackpressureMonitor backpressure;
+    private final LinkQuality linkQuality;
+    private final AdaptiveRate adaptiveRate;
+    private final AtomicLong stopRequestedNanos = new AtomicLong();
+    private volatile Connection watched; // written holding the watchdog lock
+    private volatile boolean autoReconnect;
+    private volatile long reconnects;
+    private volatile long skippedButtons; // written by the WriterThread only
+    private volatile boolean changeDriven;
+    private int notifiedState; // guarded by listener
+
+    public SerialLink(Listener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must not be null");
+        }
+        this.listener = listener;
+        codec = new CommandCodec();
+        mailbox = new CommandMailbox();
+        changeFilter = new ChangeFilter();
+        latencyTracker = new LatencyTracker();
+        watchdog = new HeartbeatWatchdog(HeartbeatWatchdog.DEFAULT_TIMEOUT_MILLIS,
+                new HeartbeatWatchdog.Listener() {
+                    @Override
+                    public void onLinkTimeout(long silentNanos) {
+                        linkTimedOut();
+                    }
+                });
+        backoff = new ReconnectBackoff();
+        reconnectTimes = new LatencyHistogram();
+        stopTimes = new LatencyHistogram();
+        buttonTimes = new LatencyHistogram();
+        backpressure = new BackpressureMonitor();
+        linkQuality = new LinkQuality();
+        adaptiveRate = new AdaptiveRate(linkQuality);
+        notifiedState = STATE_STANDBY;
+    }
+
+    /**
+     * Report the current state to the listener, unless already reported. Called
+     * after every transition; as the state is read under the lock, the last
+     * report always matches the state, whichever order the threads arrive in.
+     */
+    private void notifyState() {
+        synchronized (listener) {
+            final int state = getState();
+            if (state != notifiedState) {
+                notifiedState = state;
+                listener.onStateChanged(state);
+            }
+        }
+    }
+
+    /**
+     * Return the current connection state. Lock free, safe to call from the touch path.
+     */
+    public int getState() {
+        final Connection connection = current.get();
+        return connection == null ? STATE_STANDBY : connection.state.get();
+    }
+
+    /**
+     * Select the drive command format, see CommandCodec.
+     */
+    public void setCommandFormat(int format) {
+        codec.setFormat(format);
+    }
+
+    public int getCommandFormat() {
+        return codec.getFormat();
+    }
+
+    /**
+     * Only send drive commands that differ from the last one sent, see ChangeFilter.
+     * Unchanged commands are then sent at the keepalive interval only. In the
+     * legacy format, whose heartbeats repeat the last command, an idle link is
+     * then also kept alive at that interval rather than the heartbeat interval.
+     */
+    public void setChangeDriven(boolean changeDriven) {
+        this.changeDriven = changeDriven;
+    }
+
+    public boolean isChangeDriven() {
+        return changeDriven;
+    }
+
+    /**
+     * Return the filter deciding which commands are sent in change driven mode.
+     */
+    public ChangeFilter getChangeFilter() {
+        return changeFilter;
+    }
+
+    /**
+     * Return the mailbox the drive commands are published to.
+     */
+    public CommandMailbox getMailbox() {
+        return mailbox;
+    }
+
+    /**
+     * Return the tracker timing the drive commands from input to telemetry.
+     */
+    public LatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+
+    /**
+     * Return the watchdog detecting a dead link, see HeartbeatWatchdog.
+     */
+    public HeartbeatWatchdog getHeartbeatWatchdog() {
+        return watchdog;
+    }
+
+    /**
+     * Set how long the rover may be silent before the link is declared lost,
+     * 0 disables the heartbeats. Takes effect from the next connection.
+     */
+    public void setHeartbeatTimeout(long millis) {
+        watchdog.setTimeout(millis);
+    }
+
+    /**
+     * Reconnect automatically when a connection made through a factory is lost.
+     */
+    public void setAutoReconnect(boolean autoReconnect) {
+        this.autoReconnect = autoReconnect;
+    }
+
+    public boolean isAutoReconnect() {
+        return autoReconnect;
+    }
+
+    /**
+     * Return the backoff between reconnect attempts.
+     */
+    public ReconnectBackoff getReconnectBackoff() {
+        return backoff;
+    }
+
+    /**
+     * Time from losing a connection until it was re-established.
+     */
+    public LatencyHistogram getReconnectTimes() {
+        return reconnectTimes;
+    }
+
+    public long getReconnects() {
+        return reconnects;
+    }
+
+    /**
+     * Return the monitor timing the writes, see BackpressureMonitor.
+     */
+    public BackpressureMonitor getBackpressure() {
+        return backpressure;
+    }
+
+    /**
+     * Return the estimates of the link quality, see LinkQuality.
+     */
+    public LinkQuality getLinkQuality() {
+        return linkQuality;
+    }
+
+    /**
+     * Return the command rate suggested by the link quality, see AdaptiveRate.
+     */
+    public AdaptiveRate getAdaptiveRate() {
+        return adaptiveRate;
+    }
+
+    /**
+     * Time from emergencyStop() to the stop frame written to the transport.
+     */
+    public LatencyHistogram getStopTimes() {
+        return stopTimes;
+    }
+
+    /**
+     * Time from a button press or release to its event frame written to the transport.
+     */
+    public LatencyHistogram getButtonTimes() {
+        return buttonTimes;
+    }
+
+    /**
+     * Button events not sent because the command format was legacy.
+     */
+    public long getSkippedButtons() {
+        return skippedButtons;
+    }
+
+    /**
+     * Start the ConnectThread to initiate a connection over the transport.
+     * It is not re-established when lost.
+     */
+    public void connect(Transport transport) {
+        begin(new Connection(transport, null, STATE_CONNECTING, 0, 0));
+    }
+
+    /**
+     * Start the ConnectThread to initiate a connection over a transport from the
+     * factory. If auto reconnect is enabled, it is re-established when lost.
+     */
+    public void connect(Transport.Factory factory) {
+        backoff.reset();
+        begin(new Connection(factory.create(), factory, STATE_CONNECTING, 0, 0));
+    }
+
+    /**
+     * Make the connection current, replacing any other, and start connecting.
+     */
+    private void begin(Connection connection) {
+        final Connection previous = current.getAndSet(connection);
+        notifyState();
+        if (previous != null) {
+            previous.close();
+        }
+        connection.start();
+    }
+
+    /**
+     * Replace a lost or failed connection by the next reconnect attempt, if
+     * reconnecting and nothing else replaced it meanwhile.
+     *
+     * @return false if the connection is not to be re-established.
+     */
+    private boolean reconnect(Connection lost, long lostNanos) {
+        if (!autoReconnect || lost.factory == null) {
+            return false;
+        }
+        if (current.get() != lost) {
+            // Stopped or replaced, which ends the reconnecting as well
+            return true;
+        }
+        final Connection next = new Connection(lost.factory.create(), lost.factory,
+                STATE_RECONNECTING, lostNanos, backoff.nextDelayMillis());
+        if (!current.compareAndSet(lost, next)) {
+            next.close();
+            return true;
+        }
+        notifyState();
+        lost.close();
+        next.start();
+        return true;
+    }
+
+    /**
+     * Close the connection and, if it is still current, return to standby.
+     */
+    private void end(Connection connection) {
+        connection.close();
+        if (current.compareAndSet(connection, null)) {
+            notifyState();
+        }
+    }
+
+    /**
+     * Publish the latest drive command with the signed wheel values. Never blocks;
+     * the WriterThread sends it, replacing any older command it has not sent yet.
+     */
+    public void publishDrive(int left, int right) {
+        mailbox.post(left, right);
+    }
+
+    /**
+     * Publish a press or release of one of the CommandCodec buttons. Never blocks;
+     * the WriterThread sends it at its next write, after the events published
+     * before it. In the legacy format it is skipped, see getSkippedButtons().
+     */
+    public void publishButton(int button, boolean pressed) {
+        publishButton(button, pressed, System.nanoTime());
+    }
+
+    /**
+     * @param inputNanos when the button was pressed or released, in the System.nanoTime() time base.
+     * @return false if too many events were waiting and this one was dropped.
+     */
+    public boolean publishButton(int button, boolean pressed, long inputNanos) {
+        if (button < 0 || button >= CommandCodec.BUTTON_COUNT) {
+            throw new IllegalArgumentException("Unknown button: " + button);
+        }
+        return mailbox.postEvent(button << 1 | (pressed ? 1 : 0), inputNanos);
+    }
+
+    /**
+     * Stop the rover as soon as possible. Never blocks; the WriterThread sends a
+     * stop command at its next write, ahead of everything else.
+     */
+    public void emergencyStop() {
+        // Timed from the first request not sent yet
+        stopRequestedNanos.compareAndSet(0, System.nanoTime());
+        mailbox.postPriority(0, 0);
+    }
+
+    /**
+     * Stop all threads
+     */
+    public void stop() {
+        // Whatever became current meanwhile, such as a reconnect attempt, is stopped too
+        Connection connection;
+        while ((connection = current.get()) != null) {
+            end(connection);
+        }
+    }
+
+    /**
+     * Start the ConnectedThread to begin managing a connection
+     */
+    private void manageConnectedTransport(Connection connection) {
+
+        // A newer connect() or stop() cancelled this attempt
+        if (current.get() != connection) {
+            connection.transport.close();
+            return;
+        }
+
+        // Send the name of the connected device back to the listener
+        listener.onConnected(connection.transport.getName());
+
+        // Do not send commands published before the connection was made
+        mailbox.clear();
+        stopRequestedNanos.set(0);
+        changeFilter.reset();
+        latencyTracker.discardInFlight();
+        linkQuality.reset();
+
+        connection.connectedThread = new ConnectedThread(connection);
+        if (!connection.advance(STATE_CONNECTED)) {
+            // Closed while getting here
+            connection.connectedThread.cancel();
+            return;
+        }
+        if (connection.lostNanos != 0) {
+            reconnectTimes.record(System.nanoTime() - connection.lostNanos);
+            ++reconnects;
+        }
+        notifyState();
+
+        // Start the thread to manage the connection and perform transmissions
+        connection.connectedThread.start();
+        watch(connection);
+    }
+
+    /**
+     * Point the watchdog at the connection, if it is still the current one and
+     * connected. A connection being closed has unwatched itself already, or
+     * unwatches itself once this returns.
+     */
+    private void watch(Connection connection) {
+        synchronized (watchdog) {
+            if (current.get() == connection && connection.state.get() == STATE_CONNECTED) {
+                watched = connection;
+                watchdog.start();
+            }
+        }
+    }
+
+    private void unwatch(Connection connection) {
+        synchronized (watchdog) {
+            if (watched == connection) {
+                watched = null;
+                watchdog.stop();
+            }
+        }
+    }
+
+    /**
+     * Indicate that the connection attempt failed and notify the listener,
+     * unless it was a reconnect attempt and the next one is started.
+     */
+    private void connectionFailed(Connection connection) {
+        if (connection.lostNanos != 0 && reconnect(connection, connection.lostNanos)) {
+            return;
+        }
+        if (current.get() != connection) {
+            return;
+        }
+        listener.onConnectionFailed();
+        end(connection);
+    }
+
+    /**
+     * The rover has been silent for the heartbeat timeout.
+     */
+    private void linkTimedOut() {
+        final Connection connection = watched;
+        if (connection != null) {
+            connection.connectedThread.timedOut();
+        }
+    }
+
+    /**
+     * Indicate that the connection was lost and notify the listener.
+     */
+    private void connectionLost(Connection connection) {
+        if (current.get() != connection) {
+            return;
+        }
+        listener.onConnectionLost();
+        backoff.reset();
+        if (!reconnect(connection, System.nanoTime())) {
+            end(connection);
+        }
+    }
+
+    /**
+     * One connect() or reconnect attempt, from connecting to standby.
+     */
+    private class Connection {
+
+        private final Transport transport;
+        private final Transport.Factory factory; // null if not re-established
+        private final AtomicInteger state;
+        private final long lostNanos;            // when the connection replaced was lost, or 0
+        private final ConnectThread connectThread;
+        private volatile ConnectedThread connectedThread;
+
+        private Connection(Transport transport, Transport.Factory factory, int state,
+                           long lostNanos, long delayMillis) {
+            this.transport = transport;
+            this.factory = factory;
+            this.state = new AtomicInteger(state);
+            this.lostNanos = lostNanos;
+            connectThread = new ConnectThread(this, delayMillis);
+        }
+
+        /**
+         * Move to the given state, if it follows the current one.
+         *
+         * @return false if another thread got to a later state first.
+         */
+        private boolean advance(int to) {
+            while (true) {
+                final int from = state.get();
+                if (!isTransition(from, to)) {
+                    return false;
+                }
+                if (state.compareAndSet(from, to)) {
+                    return true;
+                }
+            }
+        }
+
+        private void start() {
+            connectThread.start();
+        }
+
+        /**
+         * Shut down the threads and close the transport. Safe to call more than
+         * once and from any thread, including the connection's own.
+         */
+        private void close() {
+            if (advance(STATE_DISCONNECTING)) {
+                notifyState();
+            }
+            unwatch(this);
+            connectThread.cancel();
+            // Set before CONNECTED, so seen here if CONNECTED was reached
+            final ConnectedThread connected = connectedThread;
+            if (connected != null) {
+                connected.cancel();
+            }
+            advance(STATE_STANDBY);
+        }
+    }
+
+    /**
+     * Whether a connection may move between the given states.
+     */
+    static boolean isTransition(int from, int to) {
+        switch (from) {
+            case STATE_CONNECTING:
+            case STATE_RECONNECTING:
+                return to == STATE_CONNECTED || to == STATE_DISCONNECTING;
+            case STATE_CONNECTED:
+                return to == STATE_DISCONNECTING;
+            case STATE_DISCONNECTING:
+                return to == STATE_STANDBY;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Client
+     *
+     * This thread runs while attempting to make an outgoing connection.
+     * It runs straight through; the connection either succeeds or fails.
+     */
+    private class ConnectThread extends Thread {
+
+        private final Connection connection;
+        private final long delayMillis;
+        private volatile boolean cancelled;
+
+        private ConnectThread(Connection connection, long delayMillis) {
+            this.connection = connection;
+            this.delayMillis = delayMillis;
+        }
+
+        public void run() {
+            if (delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    // Cancelled while waiting to reconnect
+                    return;
+                }
+            }
+            if (cancelled) {
+                return;
+            }
+            final Transport transport = connection.transport;
+            try {
+                // Connect to the remote end. This call blocks
+                // until it succeeds or throws an exception.
+                transport.connect();
+            } catch (IOException connectException) {
+                // Unable to connect; close the transport and return.
+                transport.close();
+                if (!cancelled) {
+                    connectionFailed(connection);
+                }
+                return;
+            }
+
+            // The connection attempt succeeded. Perform work associated with
+            // the connection in a separate thread.
+            manageConnectedTransport(connection);
+        }
+
+        // Closes the transport and causes the thread to finish.
+        private void cancel() {
+            cancelled = true;
+            interrupt();
+            connection.transport.close();
+        }
+    }
+
+    /**
+     * Connection
+     *
+     * This thread runs during a connection with a remote device.
+     * It handles all incoming transmissions and owns the WriterThread.
+     */
+    private class ConnectedThread extends Thread implements FrameDecoder.FrameListener {
+
+        private final Connection connection;
+        private final Transport transport;
+        private final FrameDecoder decoder;
+        private final WriterThread writer;
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private final CommandCodec.DriveCommand telemetry = new CommandCodec.DriveCommand();
+        private final CommandCodec stopCodec = new CommandCodec();
+        private final AtomicBoolean lostReported = new AtomicBoolean();
+        private volatile boolean halted;
+        private InputStream inStream;
+        private OutputStream outStream;
+        private volatile boolean cancelled;
+
+        private ConnectedThread(Connection connection) {
+            this.connection = connection;
+            transport = connection.transport;
+            decoder = new FrameDecoder(CommandCodec.START, CommandCodec.END, this);
+            writer = new WriterThread(this);
+        }
+
+        public void run() {
+            try {
+                inStream = transport.getInputStream();
+                writeLock.lock();
+                try {
+                    outStream = transport.getOutputStream();
+                } finally {
+                    writeLock.unlock();
+                }
+            } catch (IOException e) {
+                lost();
+                return;
+            }
+
+            writer.start();
+            // Keep listening to the InputStream until an exception occurs.
+            while (!cancelled) {
+                try {
+                    if (decoder.readFrom(inStream) < 0) {
+                        throw new IOException("End of stream");
+                    }
+                } catch (IOException e) {
+                    lost();
+                    break;
+                }
+            }
+            writer.cancel();
+        }
+
+        @Override
+        public void onFrame(byte[] frame, int length) {
+            final long now = System.nanoTime();
+            watchdog.onReceived(now);
+            if (CommandCodec.isHeartbeat(frame, length)) {
+                return;
+            }
+            listener.onFrame(frame, length);
+            // Telemetry echoes the wheel values of the command it answers
+            if (CommandCodec.decodeDrive(frame, length, telemetry)) {
+                final long roundTrip = latencyTracker.onTelemetry(telemetry.left, telemetry.right, now);
+                if (roundTrip >= 0) {
+                    linkQuality.onRoundTrip(roundTrip, latencyTracker.getUnanswered());
+                }
+                listener.onTelemetry(telemetry.left, telemetry.right);
+            }
+        }
+
+        // Send data to the remote device, whole frames never interleave.
+        private void write(byte[] bytes, int length) {
+            writeLock.lock();
+            try {
+                // Nothing may follow the stop command sent on timeout
+                if (outStream != null && !halted) {
+                    final long start = System.nanoTime();
+                    outStream.write(bytes, 0, length);
+                    outStream.flush();
+                    final long end = System.nanoTime();
+                    linkQuality.onWrite(end - start, backpressure.onWritten(start, end));
+                }
+            } catch (IOException e) {
+                lost();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        // The heartbeat timed out: tell the rover to stop, if the stream is not
+        // stuck in another write, and drop the link right away.
+        private void timedOut() {
+            halted = true;
+            if (writeLock.tryLock()) {
+                try {
+                    if (outStream != null) {
+                        stopCodec.setFormat(codec.getFormat());
+                        outStream.write(stopCodec.getBuffer(), 0, stopCodec.encodeDrive(0, 0));
+                        outStream.flush();
+                    }
+                } catch (IOException e) {
+                    /* Best effort, the link is being dropped anyway */
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+            lost();
+        }
+
+        // Report the loss once, whichever thread notices it first.
+        private void lost() {
+            if (!cancelled && lostReported.compareAndSet(false, true)) {
+                connectionLost(connection);
+            }
+        }
+
+        // Shut down the connection.
+        private void cancel() {
+            cancelled = true;
+            writer.cancel();
+            transport.close();
+        }
+    }
+
+    /**
+     * Writer
+     *
+     * This thread runs alongside the ConnectedThread and sends the latest drive
+     * command from the mailbox, so blocking writes never happen on the
+     * thread that publishes the commands. It sends a heartbeat whenever it
+     * has been quiet for the heartbeat interval, and holds the drive commands
+     * back while the BackpressureMonitor throttles them.
+     */
+    private class WriterThread extends Thread {
+
+        private final ConnectedThread connection;
+        private int lastLeft;
+        private int lastRight;
+        private long lastWriteNanos;
+        private long lastDriveNanos;
+
+        private WriterThread(ConnectedThread connection) {
+            this.connection = connection;
+        }
+
+        public void run() {
+            final long heartbeatInterval = watchdog.getHeartbeatIntervalNanos();
+            try {
+                // The mailbox and codec have a single user, wait for the writer
+                // of the previous connection to let go of them
+                final WriterThread previous = lastWriter.getAndSet(this);
+                if (previous != null) {
+                    previous.join();
+                }
+                lastWriteNanos = System.nanoTime();
+                while (!isInterrupted()) {
+                    final long quietInterval = quietInterval(heartbeatInterval);
+                    final long hold = backpressure.holdNanos(System.nanoTime(), lastDriveNanos);
+                    if (hold > 0 && !mailbox.isPriorityPending() && !mailbox.isEventPending()) {
+                        // Throttled after a stall, the mailbox keeps the latest command meanwhile.
+                        // Woken early by a post, to let a priority command or an event through.
+                        LockSupport.parkNanos(this, hold);
+                        continue;
+                    }
+                    long command;
+                    if (quietInterval > 0) {
+                        command = mailbox.poll(lastWriteNanos + quietInterval - System.nanoTime());
+                    } else {
+                        command = mailbox.take();
+                    }
+                    if (command == CommandMailbox.EMPTY) {
+                        sendHeartbeat();
+                        continue;
+                    }
+                    int left = CommandMailbox.left(command);
+                    int right = CommandMailbox.right(command);
+                    if (CommandMailbox.isPriority(command)) {
+                        sendPriority(left, right);
+                        continue;
+                    }
+                    if (CommandMailbox.isEvent(command)) {
+                        final int event = CommandMailbox.event(command);
+                        sendButton(event >> 1, (event & 1) != 0);
+                        continue;
+                    }
+                    final long postedNanos = mailbox.getPostedNanos();
+                    if (backpressure.isStale(postedNanos, System.nanoTime())) {
+                        // Held up too long, the next command published replaces it
+                        continue;
+                    }
+                    if (changeDriven && !changeFilter.shouldSend(left, right, System.nanoTime())) {
+                        if (quietInterval > 0 && System.nanoTime() - lastWriteNanos >= quietInterval) {
+                            sendHeartbeat();
+                        }
+                        continue;
+                    }
+                    sendDrive(left, right);
+                    backpressure.onSent(postedNanos, lastWriteNanos);
+                }
+            } catch (InterruptedException e) {
+                /* Connection closed */
+            }
+        }
+
+        // Longest the link may stay quiet. Legacy firmware only answers drive
+        // commands, so change driven it is the keepalive interval, and the
+        // watchdog waits that much longer for the answer.
+        private long quietInterval(long heartbeatInterval) {
+            long interval = heartbeatInterval;
+            if (heartbeatInterval > 0 && changeDriven && codec.getFormat() == CommandCodec.FORMAT_LEGACY) {
+                interval = Math.max(heartbeatInterval, changeFilter.getKeepaliveNanos());
+            }
+            watchdog.setExtension(interval - heartbeatInterval);
+            return interval;
+        }
+
+        private void sendDrive(int left, int right) {
+            long sequence = latencyTracker.onEncoded(left, right, System.nanoTime());
+            int length = codec.encodeDrive(left, right);
+            connection.write(codec.getBuffer(), length);
+            lastWriteNanos = System.nanoTime();
+            lastDriveNanos = lastWriteNanos;
+            latencyTracker.onWritten(sequence, lastWriteNanos);
+            lastLeft = left;
+            lastRight = right;
+        }
+
+        private void sendPriority(int left, int right) {
+            sendDrive(left, right);
+            final long requested = stopRequestedNanos.getAndSet(0);
+            if (requested != 0) {
+                stopTimes.record(lastWriteNanos - requested);
+            }
+            changeFilter.recordSent(left, right, lastWriteNanos);
+        }
+
+        private void sendButton(int button, boolean pressed) {
+            if (codec.getFormat() == CommandCodec.FORMAT_LEGACY) {
+                // A binary frame could desync the ASCII parser of older firmware
+                ++skippedButtons;
+                return;
+            }
+            int length = codec.encodeButton(button, pressed);
+            connection.write(codec.getBuffer(), length);
+            lastWriteNanos = System.nanoTime();
+            buttonTimes.record(lastWriteNanos - mailbox.getEventNanos());
+        }
+
+        private void sendHeartbeat() {
+            if (codec.getFormat() == CommandCodec.FORMAT_LEGACY) {
+                // Older firmware does not echo heartbeats, but answers every drive command
+                sendDrive(lastLeft, lastRight);
+                if (changeDriven) {
+                    changeFilter.recordSent(lastLeft, lastRight, lastWriteNanos);
+                }
+                return;
+            }
+            int length = codec.encodeHeartbeat();
+            connection.write(codec.getBuffer(), length);
+            lastWriteNanos = System.nanoTime();
+        }
+
+        private void cancel() {
+            interrupt();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.statictomato.apps.rovercontroller;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.util.LruCache;
+
+/**
+ * Drawables rasterised once at the size a view draws them, so a frame only
+ * copies a bitmap instead of scaling the full resolution asset.
+ *
+ * One cache for the process, so the sprites outlive the views and activities
+ * recreated on a configuration change. It holds at most a fixed share of the
+ * heap, the least recently used sprites are dropped beyond that. Hits and
+ * misses are counted for tuning the budget.
+ */
+public final class SpriteCache {
+
+    /* Share of the maximum heap the sprites may take */
+    private static final int HEAP_FRACTION = 8;
+
+    private static SpriteCache instance;
+
+    private final LruCache<Long, Bitmap> sprites;
+
+    /**
+     * The process wide cache, sized from the heap on first use.
+     */
+    public static synchronized SpriteCache getInstance() {
+        if(instance == null) {
+            instance = new SpriteCache((int) (Runtime.getRuntime().maxMemory() / 1024 / HEAP_FRACTION));
+        }
+        return instance;
+    }
+
+    /**
+     * @param maxKilobytes memory budget for the bitmaps.
+     */
+    public SpriteCache(int maxKilobytes) {
+        sprites = new LruCache<Long, Bitmap>(maxKilobytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap bitmap) {
+                return Math.max(1, bitmap.getByteCount() / 1024);
+            }
+        };
+    }
+
+    /**
+     * The drawable rasterised into a square of the given side, from the cache
+     * or rendered on a miss. Null while the view has no size.
+     *
+     * Look the sprites up when the size changes and keep them, not on every frame.
+     */
+    public Bitmap get(Resources resources, int resId, int size) {
+        if(size <= 0) {
+            return null;
+        }
+        final Long key = ((long) resId << 32) | size;
+        Bitmap bitmap = sprites.get(key);
+        if(bitmap == null) {
+            Drawable drawable = resources.getDrawable(resId);
+            bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+            drawable.setBounds(0, 0, size, size);
+            drawable.draw(new Canvas(bitmap));
+            sprites.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    public int getHits() {
+        return sprites.hitCount();
+    }
+
+    public int getMisses() {
+        return sprites.missCount();
+    }
+
+    /**
+     * Append a one line summary of the lookups and the memory used.
+     */
+    public void export(StringBuilder out) {
+        out.append("hits=").append(getHits())
+                .append(" misses=").append(getMisses())
+                .append(" size=").append(sprites.size()).append('/').append(sprites.maxSize()).append(" KB");
+    }
+}
@@ -0,0 +1,201 @@
+package com.statictomato.apps.rovercontroller;
+
+/**
+ * Tracks the hat of one control stick, in view coordinates.
+ *
+ * A pointer grabs the stick by touching the hat, then drags it relative to
+ * where it grabbed. The hat is kept within the inner radius, and the finger
+ * may wander out to the outer radius before the drag stops following it.
+ * Releasing the pointer recenters the hat. The touch may be smoothed by a
+ * TouchFilter before it moves the hat. Distances are compared squared against
+ * radii squared once per size, a square root is only taken to clamp. Used by
+ * DualStickView for each stick, and free of Android classes so it runs on the
+ * JVM.
+ */
+public class StickTracker {
+
+    public static final int INVALID_POINTER_ID = -1;
+
+    private int activePointer = INVALID_POINTER_ID;
+
+    private TouchFilter filter;
+
+    private float centerX;
+    private float centerY;
+
+    private float baseRadius;
+    private float hatRadius;
+    private float maxOuterRadius;
+    private float maxInnerRadius;
+    private float hatRadiusSquared;
+    private float maxOuterRadiusSquared;
+    private float maxInnerRadiusSquared;
+
+    private float hatCenterX;
+    private float hatCenterY;
+
+    private float lastTouchX;
+    private float lastTouchY;
+
+    /**
+     * Place the stick, size being the side of the square it is drawn in.
+     * Recenters the hat and drops the pointer.
+     */
+    public void setGeometry(float centerX, float centerY, int size) {
+        this.centerX = centerX;
+        this.centerY = centerY;
+
+        baseRadius = size/3;
+        maxInnerRadius = size*3/10;
+        maxOuterRadius = size/2;
+        hatRadius = size/5;
+        hatRadiusSquared = hatRadius * hatRadius;
+        maxOuterRadiusSquared = maxOuterRadius * maxOuterRadius;
+        maxInnerRadiusSquared = maxInnerRadius * maxInnerRadius;
+
+        activePointer = INVALID_POINTER_ID;
+        hatCenterX = centerX;
+        hatCenterY = centerY;
+        lastTouchX = centerX;
+        lastTouchY = centerY;
+    }
+
+    /**
+     * Smooth the touch with the given filter, null for the raw touch.
+     */
+    public void setFilter(TouchFilter filter) {
+        this.filter = filter;
+    }
+
+    public TouchFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Let the pointer grab the stick if it touches the hat and no other holds it.
+     *
+     * @return true if it grabbed the stick.
+     */
+    public boolean grab(int pointerId, float touchX, float touchY) {
+        if(activePointer != INVALID_POINTER_ID) {
+            return false;
+        }
+        if(distanceSquared(touchX, touchY, centerX, centerY) < hatRadiusSquared) {
+            activePointer = pointerId;
+            if(filter != null) {
+                filter.reset();
+            }
+            lastTouchX = touchX;
+            lastTouchY = touchY;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Follow the grabbing pointer to the given point. Call for every sample,
+     * historical ones included, so the filter sees the whole path.
+     */
+    public void drag(float touchX, float touchY, long eventTimeNanos) {
+        if(filter != null) {
+            filter.add(touchX, touchY, eventTimeNanos);
+            touchX = filter.getX();
+            touchY = filter.getY();
+        }
+        /* Move the hat by the X and Y displacement of the touch */
+        hatCenterX += touchX - lastTouchX;
+        hatCenterY += touchY - lastTouchY;
+        final float dHatSquared = distanceSquared(hatCenterX, hatCenterY, centerX, centerY);
+        if(dHatSquared > maxInnerRadiusSquared) {
+            float ratio = maxInnerRadius / (float) Math.sqrt(dHatSquared);
+            hatCenterX = centerX + (hatCenterX - centerX) * ratio;
+            hatCenterY = centerY + (hatCenterY - centerY) * ratio;
+        }
+        /* Update last touch point, bound by maxOuterRadius */
+        lastTouchX = touchX;
+        lastTouchY = touchY;
+        final float dTouchSquared = distanceSquared(touchX, touchY, centerX, centerY);
+        if(dTouchSquared > maxOuterRadiusSquared) {
+            float ratio = maxOuterRadius / (float) Math.sqrt(dTouchSquared);
+            lastTouchX = centerX + (touchX - centerX) * ratio;
+            lastTouchY = centerY + (touchY - centerY) * ratio;
+        }
+    }
+
+    /**
+     * Release the stick if the given pointer holds it, recentering the hat.
+     *
+     * @return true if it held the stick.
+     */
+    public boolean release(int pointerId) {
+        if(activePointer == INVALID_POINTER_ID || activePointer != pointerId) {
+            return false;
+        }
+        release();
+        return true;
+    }
+
+    /**
+     * Release the stick whichever pointer holds it, recentering the hat.
+     */
+    public void release() {
+        activePointer = INVALID_POINTER_ID;
+        hatCenterX = centerX;
+        hatCenterY = centerY;
+    }
+
+    private static float distanceSquared(float x, float y, float toX, float toY) {
+        final float dx = x - toX;
+        final float dy = y - toY;
+        return dx * dx + dy * dy;
+    }
+
+    public boolean isActive() {
+        return activePointer != INVALID_POINTER_ID;
+    }
+
+    /**
+     * The pointer holding the stick, INVALID_POINTER_ID if none.
+     */
+    public int getPointerId() {
+        return activePointer;
+    }
+
+    /**
+     * Hat displacement to the right, -1 to 1.
+     */
+    public float getPercentX() {
+        return maxInnerRadius > 0 ? (hatCenterX - centerX)/maxInnerRadius : 0;
+    }
+
+    /**
+     * Hat displacement downwards, -1 to 1.
+     */
+    public float getPercentY() {
+        return maxInnerRadius > 0 ? (hatCenterY - centerY)/maxInnerRadius : 0;
+    }
+
+    public float getCenterX() {
+        return centerX;
+    }
+
+    public float getCenterY() {
+        return centerY;
+    }
+
+    public float getHatCenterX() {
+        return hatCenterX;
+    }
+
+    public float getHatCenterY() {
+        return hatCenterY;
+    }
+
+    public float getBaseRadius() {
+        return baseRadius;
+    }
+
+    public float getHatRadius() {
+        return hatRadius;
+    }
+}
@@ -0,0 +1,56 @@
+package com.statictomato.apps.rovercontroller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Transport over a TCP socket, e.g. to a simulated rover on localhost
+ * or a serial to network bridge.
+ */
+public class TcpTransport implements Transport {
+
+    public static final int CONNECT_TIMEOUT = 5000; // ms
+
+    private final String host;
+    private final int port;
+    private final Socket socket;
+
+    public TcpTransport(String host, int port) {
+        this.host = host;
+        this.port = port;
+        this.socket = new Socket();
+    }
+
+    @Override
+    public void connect() throws IOException {
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return socket.getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return socket.getOutputStream();
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            /* Ignore... */
+        }
+    }
+
+    @Override
+    public String getName() {
+        return host + ":" + port;
+    }
+}
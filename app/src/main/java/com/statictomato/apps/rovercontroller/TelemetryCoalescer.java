@@ -0,0 +1,95 @@
+package com.statictomato.apps.rovercontroller;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands the latest telemetry from the reading thread to the UI thread, which
+ * renders it at most once per display frame.
+ *
+ * The reading thread overwrites the latest values on every frame received, and
+ * only the first frame after a render asks for the next one, so the UI thread
+ * never queues up frames it would not get to show. Both wheel values are packed
+ * into a single word, so the UI always takes a consistent pair.
+ */
+public class TelemetryCoalescer {
+
+    private final AtomicLong latest = new AtomicLong();
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong rendered = new AtomicLong();
+
+    /**
+     * Store the values of a frame received, replacing any not yet rendered.
+     *
+     * @return true if a render has to be scheduled, false if one already is.
+     */
+    public boolean offer(int left, int right) {
+        latest.set(pack(left, right));
+        received.incrementAndGet();
+        return !pending.get() && pending.compareAndSet(false, true);
+    }
+
+    public boolean isPending() {
+        return pending.get();
+    }
+
+    /**
+     * Take the latest values for rendering, unpack them with left() and right().
+     * Frames received from now on schedule the next render.
+     */
+    public long take() {
+        pending.set(false);
+        rendered.incrementAndGet();
+        return latest.get();
+    }
+
+    /**
+     * Drop a scheduled render, as when the display is reset.
+     */
+    public void cancel() {
+        pending.set(false);
+    }
+
+    public static long pack(int left, int right) {
+        return ((long) left << 32) | (right & 0xFFFFFFFFL);
+    }
+
+    public static int left(long values) {
+        return (int) (values >> 32);
+    }
+
+    public static int right(long values) {
+        return (int) values;
+    }
+
+    /**
+     * Telemetry frames received.
+     */
+    public long getReceived() {
+        return received.get();
+    }
+
+    /**
+     * Telemetry frames rendered, the rest were replaced by newer ones first.
+     */
+    public long getRendered() {
+        return rendered.get();
+    }
+
+    public void reset() {
+        received.set(0);
+        rendered.set(0);
+    }
+
+    /**
+     * Append a one line summary of the frames received and rendered.
+     */
+    public void export(StringBuilder out) {
+        final long received = getReceived();
+        final long rendered = getRendered();
+        out.append("received=").append(received)
+                .append(" rendered=").append(rendered)
+                .append(" coalesced=").append(Math.max(0, received - rendered));
+    }
+}
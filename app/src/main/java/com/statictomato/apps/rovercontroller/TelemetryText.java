@@ -0,0 +1,49 @@
+package com.statictomato.apps.rovercontroller;
+
+/**
+ * Formats a telemetry wheel value as "Direction: 0, Speed: 042" into a reusable
+ * char buffer, for TextView.setText(char[], int, int), so showing telemetry
+ * allocates nothing per frame. Speeds have at least three digits.
+ *
+ * The direction is that of the signed wheel value, which a stopped wheel does
+ * not have: at speed 0 it always reads 0, whichever direction the rover sent.
+ * A wheel at a standstill has no direction worth showing, so this is deliberate.
+ */
+public final class TelemetryText {
+
+    private static final char[] DIRECTION = "Direction: ".toCharArray();
+    private static final char[] SPEED = ", Speed: ".toCharArray();
+
+    /* Longest text, Direction: 1, Speed: 32768 */
+    public static final int MAX_LENGTH = 32;
+
+    private TelemetryText() {
+    }
+
+    /**
+     * Format the signed wheel value into the buffer, which must hold MAX_LENGTH.
+     *
+     * @return the length of the text.
+     */
+    public static int format(int wheel, char[] out) {
+        int i = 0;
+        System.arraycopy(DIRECTION, 0, out, i, DIRECTION.length);
+        i += DIRECTION.length;
+        out[i++] = (char) ('0' + CommandCodec.direction(wheel));
+        System.arraycopy(SPEED, 0, out, i, SPEED.length);
+        i += SPEED.length;
+
+        /* Count the digits, then fill them in from the least significant one */
+        final int speed = Math.min(CommandCodec.speed(wheel), 99999);
+        int digits = 3;
+        for (int v = speed / 1000; v > 0; v /= 10) {
+            ++digits;
+        }
+        int value = speed;
+        for (int n = i + digits - 1; n >= i; --n) {
+            out[n] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return i + digits;
+    }
+}
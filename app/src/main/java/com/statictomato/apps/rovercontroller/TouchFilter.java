@@ -0,0 +1,64 @@
+package com.statictomato.apps.rovercontroller;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Smooths a touch point with a OneEuroFilter per axis, and optionally predicts
+ * it a short horizon ahead from the smoothed speed, to make up for the time
+ * the touch took to reach the app.
+ *
+ * The defaults are tuned for view pixels at touch sample rates of 60 to 240 Hz.
+ */
+public class TouchFilter {
+
+    public static final double DEFAULT_MIN_CUTOFF = 1.0; // Hz
+    public static final double DEFAULT_BETA = 0.02;      // per pixel per second
+    public static final long DEFAULT_PREDICTION_MILLIS = 0;
+
+    private final OneEuroFilter x;
+    private final OneEuroFilter y;
+    private final double predictionSeconds;
+
+    private float filteredX;
+    private float filteredY;
+
+    public TouchFilter() {
+        this(DEFAULT_MIN_CUTOFF, DEFAULT_BETA, DEFAULT_PREDICTION_MILLIS);
+    }
+
+    /**
+     * @param predictionMillis how far ahead to predict the point, 0 for no prediction.
+     */
+    public TouchFilter(double minCutoff, double beta, long predictionMillis) {
+        if (predictionMillis < 0) {
+            throw new IllegalArgumentException("Prediction must not be negative");
+        }
+        x = new OneEuroFilter(minCutoff, beta);
+        y = new OneEuroFilter(minCutoff, beta);
+        predictionSeconds = predictionMillis / (double) TimeUnit.SECONDS.toMillis(1);
+    }
+
+    /**
+     * Filter the next touch sample, read the result with getX() and getY().
+     */
+    public void add(float touchX, float touchY, long timeNanos) {
+        filteredX = (float) (x.filter(touchX, timeNanos) + x.getDerivative() * predictionSeconds);
+        filteredY = (float) (y.filter(touchY, timeNanos) + y.getDerivative() * predictionSeconds);
+    }
+
+    public float getX() {
+        return filteredX;
+    }
+
+    public float getY() {
+        return filteredY;
+    }
+
+    /**
+     * Start over for a new touch, its first sample passes unfiltered.
+     */
+    public void reset() {
+        x.reset();
+        y.reset();
+    }
+}
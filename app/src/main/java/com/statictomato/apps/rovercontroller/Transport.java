@@ -0,0 +1,37 @@
+package com.statictomato.apps.rovercontroller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Byte stream connection to a rover that the SerialLink runs on.
+ */
+public interface Transport {
+
+    /**
+     * Creates fresh transports to the same remote end, used to reconnect.
+     */
+    interface Factory {
+        Transport create();
+    }
+
+    /**
+     * Open the connection. Blocks until it succeeds or fails.
+     */
+    void connect() throws IOException;
+
+    InputStream getInputStream() throws IOException;
+
+    OutputStream getOutputStream() throws IOException;
+
+    /**
+     * Close the connection, unblocking any pending connect, read or write.
+     */
+    void close();
+
+    /**
+     * Name of the remote end, shown to the user.
+     */
+    String getName();
+}
@@ -0,0 +1,117 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveRateTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long INTERVAL = AdaptiveRate.ADJUST_INTERVAL_MILLIS * MS;
+
+    private final LinkQuality quality = new LinkQuality();
+    private final AdaptiveRate rate = new AdaptiveRate(quality);
+    private long now = MS;
+
+    private int step() {
+        now += INTERVAL;
+        return rate.update(now);
+    }
+
+    @Test
+    public void startsAtTheLowerBound() {
+        assertEquals(AdaptiveRate.DEFAULT_MIN_RATE, rate.getRate());
+        assertEquals(AdaptiveRate.DEFAULT_MIN_RATE, rate.update(now));
+    }
+
+    @Test
+    public void cleanLinkGrowsUpToTheUpperBound() {
+        rate.update(now);
+        quality.onRoundTrip(20 * MS, 0);
+        assertEquals(15, step());
+        assertEquals(20, step());
+        for (int i = 0; i < 100; ++i) {
+            step();
+        }
+        assertEquals(AdaptiveRate.DEFAULT_MAX_RATE, rate.getRate());
+    }
+
+    @Test
+    public void doesNotGrowBeforeAnyAnswer() {
+        rate.update(now);
+        assertEquals(10, step());
+    }
+
+    @Test
+    public void adjustsOncePerInterval() {
+        rate.update(now);
+        quality.onRoundTrip(20 * MS, 0);
+        assertEquals(10, rate.update(now + INTERVAL / 2));
+        assertEquals(15, rate.update(now + INTERVAL));
+        assertEquals(15, rate.update(now + INTERVAL + 1));
+    }
+
+    @Test
+    public void stallBacksOff() {
+        rate.reset(100);
+        rate.update(now);
+        quality.onRoundTrip(20 * MS, 0);
+        quality.onWrite(80 * MS, true);
+        assertEquals(50, step());
+        /* The stall was dealt with, but the slow writes still exceed half a period */
+        assertEquals(25, step());
+    }
+
+    @Test
+    public void growsAgainOnlyAfterRecovering() {
+        rate.reset(40);
+        rate.update(now);
+        quality.onRoundTrip(20 * MS, 0);
+        quality.onWrite(80 * MS, true);
+        assertEquals(20, step());
+        quality.reset();
+        quality.onRoundTrip(20 * MS, 0);
+        for (int i = 1; i < AdaptiveRate.RECOVERY_INTERVALS; ++i) {
+            assertEquals(20, step());
+        }
+        assertEquals(25, step());
+        assertEquals(30, step());
+    }
+
+    @Test
+    public void lossAndSlowRoundTripsBackOff() {
+        rate.reset(100);
+        rate.update(now);
+        quality.onRoundTrip(20 * MS, 0);
+        quality.onRoundTrip(20 * MS, 10);
+        assertTrue(quality.getLossRate() > AdaptiveRate.HIGH_LOSS);
+        assertEquals(50, step());
+
+        quality.reset();
+        rate.reset(100);
+        rate.update(now);
+        quality.onRoundTrip(400 * MS, 0);
+        assertEquals(50, step());
+    }
+
+    @Test
+    public void neverLeavesTheBounds() {
+        rate.setBounds(20, 40);
+        assertEquals(20, rate.getRate());
+        rate.reset(100);
+        assertEquals(40, rate.getRate());
+        rate.update(now);
+        quality.onRoundTrip(400 * MS, 0);
+        for (int i = 0; i < 20; ++i) {
+            step();
+        }
+        assertEquals(20, rate.getRate());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void boundsMustBeWithinTheScheduler() {
+        rate.setBounds(1, CommandScheduler.MAX_RATE);
+    }
+}
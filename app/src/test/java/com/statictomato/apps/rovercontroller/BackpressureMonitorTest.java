@@ -0,0 +1,76 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BackpressureMonitorTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final BackpressureMonitor monitor = new BackpressureMonitor();
+
+    @Test
+    public void slowWritesAreStalls() {
+        assertFalse(monitor.onWritten(0, 2 * MS));
+        assertTrue(monitor.onWritten(10 * MS, 70 * MS));
+        assertEquals(1, monitor.getStalls());
+        assertEquals(2, monitor.getWriteTimes().getCount());
+        assertEquals(60 * MS, monitor.getWriteTimes().getMax());
+    }
+
+    @Test
+    public void stallThrottlesForAWhile() {
+        assertEquals(0, monitor.holdNanos(0, 0));
+
+        monitor.onWritten(0, 100 * MS);
+        /* One command per throttled interval */
+        assertEquals(90 * MS, monitor.holdNanos(110 * MS, 100 * MS));
+        assertEquals(0, monitor.holdNanos(200 * MS, 100 * MS));
+        /* Back to full rate once the throttle ends */
+        assertEquals(0, monitor.holdNanos(1100 * MS, 1090 * MS));
+        assertEquals(0, monitor.holdNanos(1101 * MS, 1100 * MS));
+    }
+
+    @Test
+    public void disabledThrottleNeverHolds() {
+        monitor.setThrottle(0, 100);
+        monitor.onWritten(0, 100 * MS);
+        assertEquals(1, monitor.getStalls());
+        assertEquals(0, monitor.holdNanos(110 * MS, 100 * MS));
+    }
+
+    @Test
+    public void oldCommandsAreStale() {
+        assertFalse(monitor.isStale(0, 250 * MS));
+        assertTrue(monitor.isStale(0, 251 * MS));
+        assertEquals(1, monitor.getDropped());
+
+        monitor.setStaleLimit(0);
+        assertFalse(monitor.isStale(0, TimeUnit.SECONDS.toNanos(10)));
+    }
+
+    @Test
+    public void commandAgesAreRecorded() {
+        monitor.onSent(0, 5 * MS);
+        monitor.onSent(10 * MS, 12 * MS);
+        assertEquals(2, monitor.getCommandAges().getCount());
+        assertEquals(5 * MS, monitor.getCommandAges().getMax());
+
+        monitor.reset();
+        assertEquals(0, monitor.getCommandAges().getCount());
+        assertEquals(0, monitor.getStalls());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void stallThresholdMustBePositive() {
+        monitor.setStallThreshold(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throttledIntervalMustBePositive() {
+        monitor.setThrottle(1000, 0);
+    }
+}
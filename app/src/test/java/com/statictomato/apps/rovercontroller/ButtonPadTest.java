@@ -0,0 +1,90 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ButtonPadTest {
+
+    private static final int A = 1 << CommandCodec.BUTTON_A;
+    private static final int B = 1 << CommandCodec.BUTTON_B;
+    private static final int X = 1 << CommandCodec.BUTTON_X;
+    private static final int Y = 1 << CommandCodec.BUTTON_Y;
+
+    private final ButtonPad pad = new ButtonPad();
+
+    @Before
+    public void setUp() {
+        /* Buttons of radius 50 around (300, 300) */
+        pad.setGeometry(300, 300, 300);
+    }
+
+    private float x(int button) {
+        return pad.getCenterX(button);
+    }
+
+    private float y(int button) {
+        return pad.getCenterY(button);
+    }
+
+    @Test
+    public void buttonsFormADiamond() {
+        assertEquals(50, pad.getRadius(), 0);
+        assertEquals(400, y(CommandCodec.BUTTON_A), 0);
+        assertEquals(400, x(CommandCodec.BUTTON_B), 0);
+        assertEquals(200, x(CommandCodec.BUTTON_X), 0);
+        assertEquals(200, y(CommandCodec.BUTTON_Y), 0);
+        assertEquals(-1, pad.buttonAt(300, 300));
+        assertEquals(CommandCodec.BUTTON_B, pad.buttonAt(440, 310));
+    }
+
+    @Test
+    public void severalPointersHoldSeveralButtons() {
+        pad.down(0, x(CommandCodec.BUTTON_A), y(CommandCodec.BUTTON_A));
+        pad.down(1, x(CommandCodec.BUTTON_Y), y(CommandCodec.BUTTON_Y));
+        assertEquals(A | Y, pad.getPressed());
+        pad.up(0);
+        assertEquals(Y, pad.getPressed());
+        pad.up(1);
+        assertEquals(0, pad.getPressed());
+    }
+
+    @Test
+    public void heldButtonIsNotTakenOver() {
+        pad.down(0, x(CommandCodec.BUTTON_A), y(CommandCodec.BUTTON_A));
+        pad.down(1, x(CommandCodec.BUTTON_A), y(CommandCodec.BUTTON_A));
+        /* The second pointer holds nothing, lifting it leaves A pressed */
+        pad.up(1);
+        assertEquals(A, pad.getPressed());
+        pad.up(0);
+        assertEquals(0, pad.getPressed());
+    }
+
+    @Test
+    public void slidingRollsBetweenButtons() {
+        pad.down(0, x(CommandCodec.BUTTON_X), y(CommandCodec.BUTTON_X));
+        pad.move(0, x(CommandCodec.BUTTON_X) + 10, y(CommandCodec.BUTTON_X));
+        assertEquals(X, pad.getPressed());
+        /* Off the button releases it */
+        pad.move(0, 300, 300);
+        assertEquals(0, pad.getPressed());
+        /* Onto another presses that */
+        pad.move(0, x(CommandCodec.BUTTON_B), y(CommandCodec.BUTTON_B));
+        assertEquals(B, pad.getPressed());
+    }
+
+    @Test
+    public void missesAndCancelPressNothing() {
+        pad.down(0, 0, 0);
+        pad.up(0);
+        assertEquals(0, pad.getPressed());
+        pad.down(0, x(CommandCodec.BUTTON_A), y(CommandCodec.BUTTON_A));
+        pad.down(1, x(CommandCodec.BUTTON_B), y(CommandCodec.BUTTON_B));
+        pad.release();
+        assertEquals(0, pad.getPressed());
+        /* Free again for any pointer */
+        pad.down(2, x(CommandCodec.BUTTON_B), y(CommandCodec.BUTTON_B));
+        assertTrue(pad.isPressed(CommandCodec.BUTTON_B));
+    }
+}
@@ -0,0 +1,89 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ChangeFilterTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ChangeFilter filter = new ChangeFilter(8, 500);
+
+    @Test
+    public void firstCommandIsSent() {
+        assertTrue(filter.shouldSend(0, 0, 0));
+        assertEquals(1, filter.getSent());
+    }
+
+    @Test
+    public void unchangedCommandIsSuppressedUntilKeepalive() {
+        assertTrue(filter.shouldSend(100, -100, 0));
+        assertFalse(filter.shouldSend(100, -100, 100 * MS));
+        assertFalse(filter.shouldSend(100, -100, 499 * MS));
+        assertTrue(filter.shouldSend(100, -100, 500 * MS));
+        assertFalse(filter.shouldSend(100, -100, 600 * MS));
+        assertEquals(2, filter.getSent());
+        assertEquals(3, filter.getSuppressed());
+    }
+
+    @Test
+    public void changesWithinStepAreSuppressed() {
+        assertTrue(filter.shouldSend(80, 80, 0));
+        assertFalse(filter.shouldSend(87, 81, MS));
+        assertTrue(filter.shouldSend(88, 81, 2 * MS));
+        assertTrue(filter.shouldSend(88, 71, 3 * MS));
+    }
+
+    @Test
+    public void stopIsAlwaysSent() {
+        assertTrue(filter.shouldSend(3, -3, 0));
+        assertTrue(filter.shouldSend(0, -3, MS));
+        assertTrue(filter.shouldSend(0, 0, 2 * MS));
+        assertFalse(filter.shouldSend(0, 0, 3 * MS));
+    }
+
+    @Test
+    public void resetSendsNextCommand() {
+        assertTrue(filter.shouldSend(10, 10, 0));
+        filter.reset();
+        assertTrue(filter.shouldSend(10, 10, MS));
+    }
+
+    @Test
+    public void recordedCommandIsNotRepeated() {
+        assertTrue(filter.shouldSend(100, 100, 0));
+        filter.recordSent(0, 0, MS);
+        assertFalse(filter.shouldSend(0, 0, 2 * MS));
+        assertTrue(filter.shouldSend(100, 100, 3 * MS));
+    }
+
+    @Test
+    public void settingsAreApplied() {
+        filter.setStep(100);
+        filter.setKeepalive(50);
+        assertEquals(100, filter.getStep());
+        assertEquals(50, filter.getKeepaliveMillis());
+        assertTrue(filter.shouldSend(100, 0, 0));
+        assertFalse(filter.shouldSend(199, 0, MS));
+        assertTrue(filter.shouldSend(199, 0, 50 * MS));
+    }
+
+    @Test
+    public void exportsCounts() {
+        filter.shouldSend(100, 100, 0);
+        filter.shouldSend(100, 100, MS);
+        filter.shouldSend(100, 100, 2 * MS);
+
+        StringBuilder out = new StringBuilder();
+        filter.export(out);
+        assertEquals("sent=1 suppressed=2", out.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroStep() {
+        filter.setStep(0);
+    }
+}
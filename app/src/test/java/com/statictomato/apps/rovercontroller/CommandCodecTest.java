@@ -0,0 +1,235 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips drive commands through the CommandCodec and the FrameDecoder.
+ */
+public class CommandCodecTest {
+
+    private CommandCodec codec;
+    private CommandCodec.DriveCommand command;
+    private int decoded;
+
+    private final FrameDecoder decoder = new FrameDecoder(CommandCodec.START, CommandCodec.END,
+            new FrameDecoder.FrameListener() {
+                @Override
+                public void onFrame(byte[] frame, int length) {
+                    if (CommandCodec.decodeDrive(frame, length, command)) {
+                        ++decoded;
+                    }
+                }
+            });
+
+    @Before
+    public void setUp() {
+        codec = new CommandCodec(CommandCodec.FORMAT_BINARY);
+        command = new CommandCodec.DriveCommand();
+        decoded = 0;
+    }
+
+    private void send() {
+        decoder.feed(codec.getBuffer(), 0, codec.getFormat() == CommandCodec.FORMAT_BINARY
+                ? CommandCodec.DRIVE_FRAME_LENGTH : lengthOfLegacyFrame());
+    }
+
+    private int lengthOfLegacyFrame() {
+        byte[] buffer = codec.getBuffer();
+        int i = 0;
+        while (buffer[i] != CommandCodec.END) {
+            ++i;
+        }
+        return i + 1;
+    }
+
+    @Test
+    public void binaryRoundTrip() {
+        assertEquals(CommandCodec.DRIVE_FRAME_LENGTH, codec.encodeDrive(255, -128));
+        send();
+        assertEquals(1, decoded);
+        assertEquals(0, command.sequence);
+        assertEquals(255, command.left);
+        assertEquals(-128, command.right);
+    }
+
+    @Test
+    public void binaryPayloadMayContainDelimiters() {
+        /* 0x5345 is "SE" */
+        codec.encodeDrive(0x5345, 0x4553);
+        send();
+        assertEquals(1, decoded);
+        assertEquals(0x5345, command.left);
+        assertEquals(0x4553, command.right);
+    }
+
+    @Test
+    public void sequenceIncrementsAndWraps() {
+        for (int n = 0; n < 300; ++n) {
+            codec.encodeDrive(n, -n);
+            send();
+            assertEquals(n & 0xFF, command.sequence);
+        }
+        assertEquals(300, decoded);
+    }
+
+    @Test
+    public void valuesAreClampedToShort() {
+        codec.encodeDrive(100000, -100000);
+        send();
+        assertEquals(Short.MAX_VALUE, command.left);
+        assertEquals(Short.MIN_VALUE, command.right);
+    }
+
+    @Test
+    public void corruptedBinaryFrameIsRejected() {
+        codec.encodeDrive(10, 20);
+        byte[] frame = codec.getBuffer().clone();
+        frame[5] ^= 0x01;
+        decoder.feed(frame, 0, CommandCodec.DRIVE_FRAME_LENGTH);
+        assertEquals(0, decoded);
+
+        /* The stream recovers with the next frame */
+        codec.encodeDrive(30, 40);
+        send();
+        assertEquals(1, decoded);
+        assertEquals(30, command.left);
+    }
+
+    @Test
+    public void truncatedBinaryFrameResynchronises() {
+        codec.encodeDrive(10, 20);
+        decoder.feed(codec.getBuffer(), 0, 6);
+        /* The frame following the truncated one is consumed as its tail */
+        codec.encodeDrive(30, 40);
+        send();
+        assertEquals(0, decoded);
+        codec.encodeDrive(50, 60);
+        send();
+        assertEquals(1, decoded);
+        assertEquals(50, command.left);
+        assertEquals(60, command.right);
+    }
+
+    @Test
+    public void defaultsToLegacyFormat() {
+        assertEquals(CommandCodec.FORMAT_LEGACY, new CommandCodec().getFormat());
+    }
+
+    @Test
+    public void legacyFormat() {
+        codec.setFormat(CommandCodec.FORMAT_LEGACY);
+        int length = codec.encodeDrive(255, -12);
+        assertEquals("S0,255,1,12E", new String(codec.getBuffer(), 0, length));
+        codec.encodeDrive(0, 0);
+        assertEquals("S0,0,0,0E", new String(codec.getBuffer(), 0, lengthOfLegacyFrame()));
+    }
+
+    @Test
+    public void legacyRoundTrip() {
+        codec.setFormat(CommandCodec.FORMAT_LEGACY);
+        codec.encodeDrive(-255, 7);
+        send();
+        assertEquals(1, decoded);
+        assertEquals(-1, command.sequence);
+        assertEquals(-255, command.left);
+        assertEquals(7, command.right);
+    }
+
+    @Test
+    public void malformedLegacyFrameIsRejected() {
+        byte[] frame = "S0,1,x,3E".getBytes();
+        decoder.feed(frame, 0, frame.length);
+        frame = "S0,1,1E".getBytes();
+        decoder.feed(frame, 0, frame.length);
+        frame = "S0,1,1,2,3E".getBytes();
+        decoder.feed(frame, 0, frame.length);
+        frame = "S0,,1,2E".getBytes();
+        decoder.feed(frame, 0, frame.length);
+        assertEquals(0, decoded);
+    }
+
+    @Test
+    public void wheelConversion() {
+        assertEquals(200, CommandCodec.toWheel(0, 200));
+        assertEquals(-200, CommandCodec.toWheel(1, 200));
+        assertEquals(0, CommandCodec.direction(200));
+        assertEquals(1, CommandCodec.direction(-200));
+        assertEquals(200, CommandCodec.speed(-200));
+    }
+
+    @Test
+    public void heartbeatIsRecognisedAndNotADriveCommand() {
+        final int[] heartbeats = new int[1];
+        FrameDecoder heartbeatDecoder = new FrameDecoder(CommandCodec.START, CommandCodec.END,
+                new FrameDecoder.FrameListener() {
+                    @Override
+                    public void onFrame(byte[] frame, int length) {
+                        if (CommandCodec.isHeartbeat(frame, length)) {
+                            ++heartbeats[0];
+                        }
+                        if (CommandCodec.decodeDrive(frame, length, command)) {
+                            ++decoded;
+                        }
+                    }
+                });
+        codec.setFormat(CommandCodec.FORMAT_LEGACY);
+        assertEquals(CommandCodec.HEARTBEAT_FRAME_LENGTH, codec.encodeHeartbeat());
+        heartbeatDecoder.feed(codec.getBuffer(), 0, CommandCodec.HEARTBEAT_FRAME_LENGTH);
+        assertEquals(1, heartbeats[0]);
+        assertEquals(0, decoded);
+
+        /* Corrupted heartbeats are not recognised */
+        codec.encodeHeartbeat();
+        codec.getBuffer()[3] ^= 1;
+        heartbeatDecoder.feed(codec.getBuffer(), 0, CommandCodec.HEARTBEAT_FRAME_LENGTH);
+        assertEquals(1, heartbeats[0]);
+    }
+
+    @Test
+    public void buttonEventRoundTripsInEitherFormat() {
+        final CommandCodec.ButtonEvent event = new CommandCodec.ButtonEvent();
+        final int[] events = new int[1];
+        FrameDecoder buttonDecoder = new FrameDecoder(CommandCodec.START, CommandCodec.END,
+                new FrameDecoder.FrameListener() {
+                    @Override
+                    public void onFrame(byte[] frame, int length) {
+                        if (CommandCodec.decodeButton(frame, length, event)) {
+                            ++events[0];
+                        }
+                        if (CommandCodec.decodeDrive(frame, length, command)
+                                || CommandCodec.isHeartbeat(frame, length)) {
+                            ++decoded;
+                        }
+                    }
+                });
+        assertEquals(CommandCodec.BUTTON_FRAME_LENGTH, codec.encodeButton(CommandCodec.BUTTON_Y, true));
+        buttonDecoder.feed(codec.getBuffer(), 0, CommandCodec.BUTTON_FRAME_LENGTH);
+        assertEquals(1, events[0]);
+        assertEquals(CommandCodec.BUTTON_Y, event.button);
+        assertTrue(event.pressed);
+
+        codec.setFormat(CommandCodec.FORMAT_LEGACY);
+        codec.encodeButton(CommandCodec.BUTTON_A, false);
+        buttonDecoder.feed(codec.getBuffer(), 0, CommandCodec.BUTTON_FRAME_LENGTH);
+        assertEquals(2, events[0]);
+        assertEquals(CommandCodec.BUTTON_A, event.button);
+        assertFalse(event.pressed);
+        /* Numbered in the same sequence as the other frames */
+        assertEquals(1, event.sequence);
+        assertEquals(0, decoded);
+
+        /* Corrupted events are not recognised */
+        codec.encodeButton(CommandCodec.BUTTON_B, true);
+        codec.getBuffer()[4] ^= 1;
+        buttonDecoder.feed(codec.getBuffer(), 0, CommandCodec.BUTTON_FRAME_LENGTH);
+        assertEquals(2, events[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownFormat() {
+        codec.setFormat(7);
+    }
+}
@@ -0,0 +1,272 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class CommandMailboxTest {
+
+    private final CommandMailbox mailbox = new CommandMailbox();
+
+    @Test
+    public void takeReturnsPostedCommand() throws InterruptedException {
+        mailbox.post(-255, 128);
+        assertTrue(mailbox.isPending());
+        long command = mailbox.take();
+        assertEquals(-255, CommandMailbox.left(command));
+        assertEquals(128, CommandMailbox.right(command));
+        assertFalse(mailbox.isPending());
+    }
+
+    @Test
+    public void newerCommandOverwritesPendingOne() throws InterruptedException {
+        mailbox.post(1, 1);
+        mailbox.post(2, 2);
+        mailbox.post(3, -3);
+        long command = mailbox.take();
+        assertEquals(3, CommandMailbox.left(command));
+        assertEquals(-3, CommandMailbox.right(command));
+        assertFalse(mailbox.isPending());
+        assertEquals(3, mailbox.getPosted());
+        assertEquals(2, mailbox.getOverwritten());
+    }
+
+    @Test
+    public void pollTimesOutWhenNothingIsPosted() throws InterruptedException {
+        long start = System.nanoTime();
+        assertEquals(CommandMailbox.EMPTY, mailbox.poll(TimeUnit.MILLISECONDS.toNanos(20)));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+
+        mailbox.post(0, 0);
+        long command = mailbox.poll(TimeUnit.MILLISECONDS.toNanos(20));
+        assertNotEquals(CommandMailbox.EMPTY, command);
+        assertEquals(0, CommandMailbox.left(command));
+        assertFalse(mailbox.isPending());
+    }
+
+    @Test
+    public void clearDropsPendingCommand() {
+        mailbox.post(1, 1);
+        mailbox.clear();
+        assertFalse(mailbox.isPending());
+    }
+
+    @Test
+    public void priorityCommandIsTakenFirstAndDiscardsPendingOne() throws InterruptedException {
+        mailbox.post(100, 100);
+        mailbox.postPriority(0, 0);
+        assertTrue(mailbox.isPriorityPending());
+        long command = mailbox.take();
+        assertTrue(CommandMailbox.isPriority(command));
+        assertEquals(0, CommandMailbox.left(command));
+        assertFalse(mailbox.isPending());
+        assertFalse(mailbox.isPriorityPending());
+        assertEquals(1, mailbox.getDiscarded());
+
+        mailbox.post(5, 5);
+        command = mailbox.take();
+        assertFalse(CommandMailbox.isPriority(command));
+        assertEquals(5, CommandMailbox.left(command));
+    }
+
+    @Test
+    public void priorityCommandWakesPoll() throws InterruptedException {
+        final AtomicLong taken = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread consumer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    taken.set(mailbox.poll(TimeUnit.SECONDS.toNanos(5)));
+                    done.countDown();
+                } catch (InterruptedException e) {
+                    /* Ignore... */
+                }
+            }
+        };
+        consumer.start();
+        assertFalse(done.await(50, TimeUnit.MILLISECONDS));
+        mailbox.postPriority(0, 0);
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertTrue(CommandMailbox.isPriority(taken.get()));
+        assertEquals(0, mailbox.getDiscarded());
+    }
+
+    @Test
+    public void clearDropsPriorityCommand() {
+        mailbox.postPriority(0, 0);
+        mailbox.clear();
+        assertFalse(mailbox.isPriorityPending());
+    }
+
+    @Test
+    public void eventsAreTakenInOrderAndNeverOverwritten() throws InterruptedException {
+        mailbox.post(7, 7);
+        assertTrue(mailbox.postEvent(1, 100));
+        assertTrue(mailbox.postEvent(2, 200));
+        assertTrue(mailbox.isEventPending());
+
+        long command = mailbox.take();
+        assertTrue(CommandMailbox.isEvent(command));
+        assertEquals(1, CommandMailbox.event(command));
+        assertEquals(100, mailbox.getEventNanos());
+        command = mailbox.take();
+        assertEquals(2, CommandMailbox.event(command));
+        assertEquals(200, mailbox.getEventNanos());
+        assertFalse(mailbox.isEventPending());
+
+        /* The ordinary command waited behind them */
+        command = mailbox.take();
+        assertFalse(CommandMailbox.isEvent(command));
+        assertEquals(7, CommandMailbox.left(command));
+        assertEquals(0, mailbox.getOverwritten());
+    }
+
+    @Test
+    public void priorityCommandGoesBeforeEvents() throws InterruptedException {
+        mailbox.postEvent(1, 0);
+        mailbox.postPriority(0, 0);
+        assertTrue(CommandMailbox.isPriority(mailbox.take()));
+        long command = mailbox.take();
+        assertTrue(CommandMailbox.isEvent(command));
+        assertFalse(CommandMailbox.isPriority(command));
+    }
+
+    @Test
+    public void fullEventQueueDropsTheNewEvent() throws InterruptedException {
+        for (int i = 0; i < CommandMailbox.EVENT_CAPACITY; ++i) {
+            assertTrue(mailbox.postEvent(i, i));
+        }
+        assertFalse(mailbox.postEvent(-1, 0));
+        assertEquals(1, mailbox.getEventsDropped());
+        /* Taking one makes room again, the queue wraps around */
+        assertEquals(0, CommandMailbox.event(mailbox.take()));
+        assertTrue(mailbox.postEvent(99, 0));
+        for (int i = 1; i < CommandMailbox.EVENT_CAPACITY; ++i) {
+            assertEquals(i, CommandMailbox.event(mailbox.take()));
+        }
+        assertEquals(99, CommandMailbox.event(mailbox.take()));
+        assertEquals(CommandMailbox.EMPTY, mailbox.poll(0));
+    }
+
+    @Test
+    public void clearSkipsEventsPostedBefore() throws InterruptedException {
+        mailbox.postEvent(1, 0);
+        mailbox.postEvent(2, 0);
+        mailbox.clear();
+        mailbox.postEvent(3, 0);
+        assertEquals(3, CommandMailbox.event(mailbox.take()));
+        assertEquals(CommandMailbox.EMPTY, mailbox.poll(0));
+    }
+
+    @Test
+    public void eventsFromManyThreadsAreAllTaken() throws InterruptedException {
+        final int threads = 4;
+        final int perThread = 2000;
+        final CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; ++t) {
+            final int producer = t;
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < perThread; ) {
+                        /* Retry when full, the consumer catches up */
+                        if (mailbox.postEvent(producer << 16 | i, 0)) {
+                            ++i;
+                        } else {
+                            Thread.yield();
+                        }
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        final int[] next = new int[threads];
+        for (int n = 0; n < threads * perThread; ++n) {
+            final long command = mailbox.poll(TimeUnit.SECONDS.toNanos(5));
+            assertTrue(CommandMailbox.isEvent(command));
+            final int event = CommandMailbox.event(command);
+            /* In order for every producer */
+            assertEquals(next[event >> 16]++, event & 0xFFFF);
+        }
+    }
+
+    @Test
+    public void takeWaitsForPost() throws InterruptedException {
+        final AtomicLong taken = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread consumer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    taken.set(mailbox.take());
+                    done.countDown();
+                } catch (InterruptedException e) {
+                    /* Ignore... */
+                }
+            }
+        };
+        consumer.start();
+        assertFalse(done.await(50, TimeUnit.MILLISECONDS));
+        mailbox.post(42, -42);
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals(42, CommandMailbox.left(taken.get()));
+        assertEquals(-42, CommandMailbox.right(taken.get()));
+    }
+
+    @Test
+    public void takeIsInterruptible() throws InterruptedException {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        Thread consumer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    mailbox.take();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        };
+        consumer.start();
+        consumer.interrupt();
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void consumerAlwaysEndsWithLatestCommand() throws InterruptedException {
+        final int posts = 100000;
+        final AtomicLong last = new AtomicLong();
+        Thread consumer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        last.set(mailbox.take());
+                    }
+                } catch (InterruptedException e) {
+                    /* Done */
+                }
+            }
+        };
+        consumer.start();
+        for (int n = 1; n <= posts; ++n) {
+            mailbox.post(n, -n);
+        }
+        long deadline = System.currentTimeMillis() + 1000;
+        while (CommandMailbox.left(last.get()) != (short) posts && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        consumer.interrupt();
+        assertEquals((short) posts, CommandMailbox.left(last.get()));
+        assertEquals((short) -posts, CommandMailbox.right(last.get()));
+    }
+}
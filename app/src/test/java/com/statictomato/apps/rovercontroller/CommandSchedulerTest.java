@@ -0,0 +1,101 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class CommandSchedulerTest {
+
+    private CommandScheduler scheduler;
+
+    @After
+    public void tearDown() {
+        if (scheduler != null) {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void rateIsClamped() {
+        scheduler = new CommandScheduler(1, new CountingListener(0));
+        assertEquals(CommandScheduler.MIN_RATE, scheduler.getRate());
+        scheduler.setRate(1000);
+        assertEquals(CommandScheduler.MAX_RATE, scheduler.getRate());
+        scheduler.setRate(50);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(20), scheduler.getPeriodNanos());
+    }
+
+    @Test
+    public void listenerTimeDoesNotCauseDrift() throws InterruptedException {
+        /* 50 Hz with 5 ms of work per tick, re-arming after the work would give 40 ticks a second */
+        CountingListener listener = new CountingListener(5);
+        scheduler = new CommandScheduler(50, listener);
+        scheduler.start();
+        Thread.sleep(1000);
+        scheduler.stop();
+        long ticks = listener.ticks.get();
+        assertTrue("ticks: " + ticks, ticks >= 47 && ticks <= 52);
+        assertEquals(ticks, scheduler.getTicks());
+        assertTrue(listener.minLate.get() >= 0);
+    }
+
+    @Test
+    public void missedTicksAreSkipped() throws InterruptedException {
+        /* Work takes three and a half periods at 100 Hz */
+        CountingListener listener = new CountingListener(35);
+        scheduler = new CommandScheduler(100, listener);
+        scheduler.start();
+        Thread.sleep(500);
+        scheduler.stop();
+        long ticks = listener.ticks.get();
+        assertTrue("ticks: " + ticks, ticks >= 10 && ticks <= 16);
+        assertTrue(scheduler.getMissedTicks() >= 2 * ticks);
+        /* Lateness stays below one period plus wake-up jitter */
+        assertTrue(scheduler.getMaxLateNanos() < TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void listenerMayStopScheduler() throws InterruptedException {
+        final AtomicLong ticks = new AtomicLong();
+        scheduler = new CommandScheduler(200, new CommandScheduler.TickListener() {
+            @Override
+            public void onTick(long lateNanos) {
+                if (ticks.incrementAndGet() == 3) {
+                    scheduler.stop();
+                }
+            }
+        });
+        scheduler.start();
+        Thread.sleep(100);
+        assertFalse(scheduler.isRunning());
+        assertEquals(3, ticks.get());
+    }
+
+    private static class CountingListener implements CommandScheduler.TickListener {
+
+        private final long workMillis;
+        private final AtomicLong ticks = new AtomicLong();
+        private final AtomicLong minLate = new AtomicLong(Long.MAX_VALUE);
+
+        private CountingListener(long workMillis) {
+            this.workMillis = workMillis;
+        }
+
+        @Override
+        public void onTick(long lateNanos) {
+            ticks.incrementAndGet();
+            minLate.set(Math.min(minLate.get(), lateNanos));
+            if (workMillis > 0) {
+                try {
+                    Thread.sleep(workMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
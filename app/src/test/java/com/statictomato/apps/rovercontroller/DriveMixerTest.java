@@ -0,0 +1,128 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class DriveMixerTest {
+
+    private static final DriveMixer.Profile ARCADE = new DriveMixer.Profile(DriveMixer.MODE_ARCADE, 0, 0, 1, 1);
+
+    private static int left(DriveMixer mixer, float leftX, float leftY, float rightX, float rightY) {
+        return DriveMixer.left(mixer.mix(leftX, leftY, rightX, rightY));
+    }
+
+    private static int right(DriveMixer mixer, float leftX, float leftY, float rightX, float rightY) {
+        return DriveMixer.right(mixer.mix(leftX, leftY, rightX, rightY));
+    }
+
+    @Test
+    public void tankMatchesTheFormerMixing() {
+        DriveMixer mixer = new DriveMixer();
+        for (float y = -1; y <= 1; y += 0.001f) {
+            /* -(int) (255 * percentY), to within the table's rounding */
+            assertEquals(-(int) (255 * y), left(mixer, 0.7f, y, 0, 0), 1);
+            assertEquals(-(int) (255 * y), right(mixer, 0, 0, -0.3f, y), 1);
+        }
+        assertEquals(255, left(mixer, 0, -1, 0, 1));
+        assertEquals(-255, right(mixer, 0, -1, 0, 1));
+        assertEquals(0, left(mixer, 0, 0, 0, 0));
+    }
+
+    @Test
+    public void arcadeMixesOneStick() {
+        DriveMixer mixer = new DriveMixer(ARCADE);
+        /* Straight ahead */
+        assertEquals(255, left(mixer, 0, -1, 0, 0));
+        assertEquals(255, right(mixer, 0, -1, 0, 0));
+        /* Spin on the spot to the right */
+        assertEquals(255, left(mixer, 1, 0, 0, 0));
+        assertEquals(-255, right(mixer, 1, 0, 0, 0));
+        /* Half ahead, a little left */
+        assertEquals(64, left(mixer, -0.25f, -0.5f, 0, 0), 1);
+        assertEquals(191, right(mixer, -0.25f, -0.5f, 0, 0), 1);
+        /* Saturates at full speed, the right stick is ignored */
+        assertEquals(255, left(mixer, 1, -1, 0, 1));
+        assertEquals(0, right(mixer, 1, -1, 0, 1));
+    }
+
+    @Test
+    public void deadzoneAndExpoShapeTheSticks() {
+        DriveMixer mixer = new DriveMixer(new DriveMixer.Profile(DriveMixer.MODE_TANK, 0.2f, 1, 1, 1));
+        assertEquals(0, left(mixer, 0, -0.19f, 0, 0));
+        /* Halfway through the travel past the deadzone, cubed */
+        assertEquals(Math.round(255 * 0.125f), left(mixer, 0, -0.6f, 0, 0), 1);
+        assertEquals(255, left(mixer, 0, -1, 0, 0));
+        /* Beyond the ends is full speed */
+        assertEquals(-255, right(mixer, 0, 0, 0, 3));
+    }
+
+    @Test
+    public void shapedSticksSkipTheCurve() {
+        DriveMixer mixer = new DriveMixer(new DriveMixer.Profile(DriveMixer.MODE_TANK, 0.2f, 1, 1, 0.5f));
+        /* Linear and without deadzone, but still trimmed */
+        assertEquals(128, DriveMixer.left(mixer.mixShaped(0, -0.5f, 0, 0.1f)));
+        assertEquals(-13, DriveMixer.right(mixer.mixShaped(0, -0.5f, 0, 0.1f)));
+        assertEquals(0, DriveMixer.left(mixer.mix(0, -0.1f, 0, 0)));
+
+        mixer.setProfile(ARCADE);
+        assertEquals(DriveMixer.pack(255, 0), mixer.mixShaped(0.5f, -0.5f, 0, 0));
+    }
+
+    @Test
+    public void trimScalesEachWheel() {
+        DriveMixer mixer = new DriveMixer(new DriveMixer.Profile(DriveMixer.MODE_ARCADE, 0, 0, 1, 0.9f));
+        assertEquals(255, left(mixer, 0, -1, 0, 0));
+        assertEquals(230, right(mixer, 0, -1, 0, 0));
+        assertEquals(-230, right(mixer, 0, 1, 0, 0));
+    }
+
+    @Test
+    public void wheelsArePacked() {
+        final int wheels = DriveMixer.pack(-255, 128);
+        assertEquals(-255, DriveMixer.left(wheels));
+        assertEquals(128, DriveMixer.right(wheels));
+        assertEquals(0, DriveMixer.right(DriveMixer.pack(-1, 0)));
+    }
+
+    @Test
+    public void profileSwitchesWhileMixing() throws InterruptedException {
+        final DriveMixer mixer = new DriveMixer();
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread mixing = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 200000; ++i) {
+                    /* Left stick ahead, right stick back: tank spins, arcade drives straight */
+                    final int wheels = mixer.mix(0, -1, 0, 1);
+                    final int left = DriveMixer.left(wheels);
+                    final int right = DriveMixer.right(wheels);
+                    if (left != 255 || (right != -255 && right != 255)) {
+                        failure.set(left + "," + right);
+                    }
+                }
+                done.countDown();
+            }
+        };
+        mixing.start();
+        while (done.getCount() > 0) {
+            mixer.setProfile(ARCADE);
+            mixer.setProfile(DriveMixer.TANK);
+        }
+        assertNull(failure.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownMode() {
+        new DriveMixer.Profile(2, 0, 0, 1, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTrimAboveOne() {
+        new DriveMixer.Profile(DriveMixer.MODE_TANK, 0, 0, 1.1f, 1);
+    }
+}
@@ -0,0 +1,69 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DriveStateTest {
+
+    private final DriveState state = new DriveState();
+
+    @Test
+    public void packAndUnpack() {
+        long word = DriveState.pack(-255, 32767, -1);
+        assertEquals(-255, DriveState.left(word));
+        assertEquals(32767, DriveState.right(word));
+        assertEquals(-1, DriveState.version(word));
+    }
+
+    @Test
+    public void updatesKeepOtherWheelAndBumpVersion() {
+        assertEquals(0, DriveState.version(state.get()));
+        state.setLeft(-100);
+        state.setRight(200);
+        long word = state.get();
+        assertEquals(-100, DriveState.left(word));
+        assertEquals(200, DriveState.right(word));
+        assertEquals(2, DriveState.version(word));
+        state.set(1, -1);
+        word = state.get();
+        assertEquals(1, DriveState.left(word));
+        assertEquals(-1, DriveState.right(word));
+        assertEquals(3, DriveState.version(word));
+    }
+
+    @Test
+    public void concurrentUpdatesAreNotLost() throws InterruptedException {
+        final int updates = 100000;
+        Thread left = new Thread() {
+            @Override
+            public void run() {
+                for (int n = 1; n <= updates; ++n) {
+                    state.setLeft(n % 256);
+                }
+            }
+        };
+        Thread right = new Thread() {
+            @Override
+            public void run() {
+                for (int n = 1; n <= updates; ++n) {
+                    state.setRight(-(n % 256));
+                }
+            }
+        };
+        left.start();
+        right.start();
+        /* Snapshots taken meanwhile are always consistent with what was written */
+        while (left.isAlive() || right.isAlive()) {
+            long word = state.get();
+            assertTrue(DriveState.left(word) >= 0 && DriveState.left(word) < 256);
+            assertTrue(DriveState.right(word) <= 0 && DriveState.right(word) > -256);
+        }
+        left.join();
+        right.join();
+        long word = state.get();
+        assertEquals(updates % 256, DriveState.left(word));
+        assertEquals(-(updates % 256), DriveState.right(word));
+        assertEquals(2 * updates, DriveState.version(word));
+    }
+}
@@ -0,0 +1,156 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feeds the FrameDecoder with split, merged and corrupted chunks.
+ */
+public class FrameDecoderTest {
+
+    private List<String> frames;
+    private FrameDecoder decoder;
+
+    @Before
+    public void setUp() {
+        frames = new ArrayList<>();
+        decoder = new FrameDecoder('S', 'E', 16, 8, new FrameDecoder.FrameListener() {
+            @Override
+            public void onFrame(byte[] frame, int length) {
+                frames.add(new String(frame, 0, length));
+            }
+        });
+    }
+
+    private void feed(String data) {
+        byte[] bytes = data.getBytes();
+        decoder.feed(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void singleFrame() {
+        feed("S0,12,1E");
+        assertEquals(1, frames.size());
+        assertEquals("0,12,1", frames.get(0));
+        assertEquals(0, decoder.getBytesDiscarded());
+    }
+
+    @Test
+    public void frameSplitOverReads() {
+        feed("S1,");
+        feed("2");
+        assertEquals(0, frames.size());
+        feed(",3E");
+        assertEquals(1, frames.size());
+        assertEquals("1,2,3", frames.get(0));
+    }
+
+    @Test
+    public void framesMergedInOneRead() {
+        feed("SaESbbESE");
+        assertEquals(3, frames.size());
+        assertEquals("a", frames.get(0));
+        assertEquals("bb", frames.get(1));
+        assertEquals("", frames.get(2));
+        assertEquals(3, decoder.getFramesDecoded());
+    }
+
+    @Test
+    public void garbageBetweenFramesIsDiscarded() {
+        feed("xyzS12E??S34E");
+        assertEquals(2, frames.size());
+        assertEquals("12", frames.get(0));
+        assertEquals("34", frames.get(1));
+        assertEquals(5, decoder.getBytesDiscarded());
+    }
+
+    @Test
+    public void lostEndResynchronisesOnStart() {
+        feed("S12S34E");
+        assertEquals(1, frames.size());
+        assertEquals("34", frames.get(0));
+        assertEquals(1, decoder.getFramesDropped());
+    }
+
+    @Test
+    public void oversizedFrameIsDropped() {
+        feed("S123456789E");
+        assertEquals(0, frames.size());
+        assertEquals(1, decoder.getFramesDropped());
+        feed("S1234E");
+        assertEquals(1, frames.size());
+        assertEquals("1234", frames.get(0));
+    }
+
+    @Test
+    public void ringWrapsAround() {
+        StringBuilder expected = new StringBuilder();
+        for (int n = 0; n < 100; ++n) {
+            feed("S" + n + "E");
+            expected.append(n);
+        }
+        StringBuilder actual = new StringBuilder();
+        for (String frame : frames) {
+            actual.append(frame);
+        }
+        assertEquals(100, frames.size());
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    public void largeFeedIsChunked() {
+        StringBuilder data = new StringBuilder();
+        for (int n = 0; n < 50; ++n) {
+            data.append("S0,").append(n).append("E");
+        }
+        feed(data.toString());
+        assertEquals(50, frames.size());
+        assertEquals("0,49", frames.get(49));
+    }
+
+    @Test
+    public void readFromStreamInBulk() throws IOException {
+        final byte[] data = "S1,2ESab".getBytes();
+        InputStream in = new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                /* Deliver at most three bytes per read */
+                return super.read(b, off, Math.min(len, 3));
+            }
+        };
+        int reads = 0;
+        while (decoder.readFrom(in) > 0) {
+            ++reads;
+        }
+        assertEquals(3, reads);
+        assertEquals(1, frames.size());
+        assertEquals("1,2", frames.get(0));
+        assertEquals(-1, decoder.readFrom(in));
+
+        feed("cE");
+        assertEquals(2, frames.size());
+        assertEquals("abc", frames.get(1));
+    }
+
+    @Test
+    public void resetDropsPartialFrame() {
+        feed("S12");
+        decoder.reset();
+        feed("34ES5E");
+        assertEquals(1, frames.size());
+        assertEquals("5", frames.get(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMissingListener() {
+        new FrameDecoder('S', 'E', null);
+    }
+}
@@ -0,0 +1,92 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GamepadMapperTest {
+
+    /* Device axes and key codes as in MotionEvent and KeyEvent */
+    private static final int AXIS_Y = 1;
+    private static final int AXIS_RZ = 14;
+    private static final int KEYCODE_BUTTON_A = 96;
+    private static final int KEYCODE_BUTTON_START = 108;
+
+    private GamepadMapper mapper;
+
+    @Before
+    public void setUp() {
+        mapper = new GamepadMapper();
+        mapper.setSource(GamepadMapper.LEFT_Y, AXIS_Y);
+        mapper.setSource(GamepadMapper.RIGHT_Y, AXIS_RZ);
+        mapper.setButtonKey(CommandCodec.BUTTON_A, KEYCODE_BUTTON_A);
+    }
+
+    @Test
+    public void deadzoneReadsZeroWithoutAJumpAtItsEdge() {
+        assertEquals(0, GamepadMapper.shape(0.1f, 0.1f, 0), 0);
+        assertEquals(0, GamepadMapper.shape(-0.05f, 0.1f, 0), 0);
+        assertEquals(0.01f, GamepadMapper.shape(0.109f, 0.1f, 0), 1e-4f);
+        assertEquals(0.5f, GamepadMapper.shape(0.55f, 0.1f, 0), 1e-6f);
+        assertEquals(-1, GamepadMapper.shape(-1, 0.1f, 0), 0);
+        /* Past the end of the range is full travel */
+        assertEquals(1, GamepadMapper.shape(1.02f, 0.1f, 0), 0);
+    }
+
+    @Test
+    public void expoSoftensTheCenterAndKeepsTheEnds() {
+        final float linear = GamepadMapper.shape(0.5f, 0, 0);
+        final float expo = GamepadMapper.shape(0.5f, 0, 1);
+        assertEquals(0.5f, linear, 0);
+        assertEquals(0.125f, expo, 1e-6f);
+        assertEquals(-0.3125f, GamepadMapper.shape(-0.5f, 0, 0.5f), 1e-6f);
+        assertEquals(1, GamepadMapper.shape(1, 0, 1), 0);
+        assertEquals(-1, GamepadMapper.shape(-1, 0.2f, 0.7f), 1e-6f);
+    }
+
+    @Test
+    public void axesAreShapedOnTheirOwn() {
+        mapper.setDeadzone(GamepadMapper.LEFT_Y, 0.2f);
+        mapper.setExpo(GamepadMapper.RIGHT_Y, 1);
+        assertTrue(mapper.update(GamepadMapper.LEFT_Y, 0.6f));
+        assertTrue(mapper.update(GamepadMapper.RIGHT_Y, 0.6f));
+        assertEquals(0.5f, mapper.get(GamepadMapper.LEFT_Y), 1e-6f);
+        /* (0.5 / 0.9) cubed */
+        assertEquals(0.1715f, mapper.get(GamepadMapper.RIGHT_Y), 1e-4f);
+        assertEquals(0, mapper.get(GamepadMapper.LEFT_X), 0);
+    }
+
+    @Test
+    public void noiseInsideTheDeadzoneIsNoChange() {
+        assertFalse(mapper.update(GamepadMapper.LEFT_Y, 0.03f));
+        assertFalse(mapper.update(GamepadMapper.LEFT_Y, -0.07f));
+        assertTrue(mapper.update(GamepadMapper.LEFT_Y, -0.4f));
+        assertFalse(mapper.update(GamepadMapper.LEFT_Y, -0.4f));
+        /* Back to rest is a change */
+        assertTrue(mapper.update(GamepadMapper.LEFT_Y, 0.02f));
+        assertEquals(0, mapper.get(GamepadMapper.LEFT_Y), 0);
+    }
+
+    @Test
+    public void sourcesAndButtonsAreMapped() {
+        assertEquals(AXIS_Y, mapper.getSource(GamepadMapper.LEFT_Y));
+        assertEquals(GamepadMapper.UNMAPPED, mapper.getSource(GamepadMapper.LEFT_X));
+        assertEquals(CommandCodec.BUTTON_A, mapper.buttonFor(KEYCODE_BUTTON_A));
+        assertEquals(GamepadMapper.UNMAPPED, mapper.buttonFor(KEYCODE_BUTTON_START));
+        /* Remapping an axis centers it */
+        mapper.update(GamepadMapper.RIGHT_Y, 1);
+        mapper.setSource(GamepadMapper.RIGHT_Y, GamepadMapper.UNMAPPED);
+        assertEquals(0, mapper.get(GamepadMapper.RIGHT_Y), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void deadzoneMustLeaveSomeTravel() {
+        mapper.setDeadzone(GamepadMapper.LEFT_Y, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void expoIsBetweenLinearAndCubic() {
+        mapper.setExpo(GamepadMapper.LEFT_Y, 1.5f);
+    }
+}
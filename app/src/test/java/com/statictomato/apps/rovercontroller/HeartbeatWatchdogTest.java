@@ -0,0 +1,85 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HeartbeatWatchdogTest {
+
+    private final BlockingQueue<Long> timeouts = new LinkedBlockingQueue<>();
+    private final HeartbeatWatchdog watchdog = new HeartbeatWatchdog(100, new HeartbeatWatchdog.Listener() {
+        @Override
+        public void onLinkTimeout(long silentNanos) {
+            timeouts.add(silentNanos);
+        }
+    });
+
+    @After
+    public void tearDown() {
+        watchdog.stop();
+    }
+
+    @Test
+    public void silentLinkTimesOutOnce() throws InterruptedException {
+        long start = System.nanoTime();
+        watchdog.start();
+        Long silent = timeouts.poll(1, TimeUnit.SECONDS);
+        assertNotNull(silent);
+        long elapsed = System.nanoTime() - start;
+        assertTrue(silent > TimeUnit.MILLISECONDS.toNanos(100));
+        /* Checked six times per timeout, allow for a slow test machine */
+        assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(250));
+
+        assertNull(timeouts.poll(300, TimeUnit.MILLISECONDS));
+        assertEquals(1, watchdog.getTimeouts());
+        assertEquals(1, watchdog.getDetectionHistogram().getCount());
+    }
+
+    @Test
+    public void receivedFramesKeepTheLinkAlive() throws InterruptedException {
+        watchdog.start();
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(400);
+        while (System.nanoTime() < end) {
+            watchdog.onReceived(System.nanoTime());
+            Thread.sleep(20);
+        }
+        assertTrue(timeouts.isEmpty());
+        /* And times out once they stop */
+        assertNotNull(timeouts.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void extensionDelaysTheTimeout() throws InterruptedException {
+        watchdog.setExtension(TimeUnit.MILLISECONDS.toNanos(200));
+        watchdog.start();
+        assertNull(timeouts.poll(250, TimeUnit.MILLISECONDS));
+        Long silent = timeouts.poll(1, TimeUnit.SECONDS);
+        assertNotNull(silent);
+        assertTrue(silent > TimeUnit.MILLISECONDS.toNanos(300));
+    }
+
+    @Test
+    public void zeroTimeoutDisables() throws InterruptedException {
+        watchdog.setTimeout(0);
+        assertFalse(watchdog.isEnabled());
+        assertEquals(0, watchdog.getHeartbeatIntervalNanos());
+        watchdog.start();
+        assertNull(timeouts.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void heartbeatIntervalIsAThirdOfTheTimeout() {
+        watchdog.setTimeout(300);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), watchdog.getHeartbeatIntervalNanos());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeTimeout() {
+        watchdog.setTimeout(-1);
+    }
+}
@@ -0,0 +1,76 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(0, histogram.getMean());
+    }
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (long v = 0; v < 100000; ++v) {
+            int index = LatencyHistogram.index(v);
+            assertTrue(v <= LatencyHistogram.upperBound(index));
+            if (index > 0) {
+                assertTrue(v > LatencyHistogram.upperBound(index - 1));
+            }
+        }
+    }
+
+    @Test
+    public void percentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        /* 1 to 1000 microseconds */
+        for (int i = 1; i <= 1000; ++i) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500000, histogram.getPercentile(50), 500000 / 16);
+        assertEquals(990000, histogram.getPercentile(99), 990000 / 16);
+        assertEquals(999000, histogram.getPercentile(99.9), 999000 / 16);
+        assertEquals(1000000, histogram.getMax());
+        assertEquals(500500, histogram.getMean());
+        /* Never more than the largest value recorded */
+        assertEquals(1000000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void outliersShowInTheTail() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 998; ++i) {
+            histogram.record(2000000);
+        }
+        histogram.record(100000000);
+        histogram.record(100000000);
+        assertTrue(histogram.getPercentile(99) < 2200000);
+        assertTrue(histogram.getPercentile(99.9) > 90000000);
+    }
+
+    @Test
+    public void hugeAndNegativeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE / 2);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(Long.MAX_VALUE / 2, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+}
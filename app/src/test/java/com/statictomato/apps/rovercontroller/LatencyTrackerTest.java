@@ -0,0 +1,109 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyTrackerTest {
+
+    private final LatencyTracker tracker = new LatencyTracker();
+
+    private long send(int left, int right, long encoded, long written) {
+        long sequence = tracker.onEncoded(left, right, encoded);
+        tracker.onWritten(sequence, written);
+        return sequence;
+    }
+
+    @Test
+    public void recordsEveryStage() {
+        tracker.markInput(1000, 3000);
+        send(10, 20, 10000, 12000);
+        tracker.onTelemetry(10, 20, 50000);
+
+        assertEquals(2000, tracker.getHistogram(LatencyTracker.STAGE_INPUT).getMax());
+        assertEquals(7000, tracker.getHistogram(LatencyTracker.STAGE_QUEUE).getMax());
+        assertEquals(2000, tracker.getHistogram(LatencyTracker.STAGE_WRITE).getMax());
+        assertEquals(11000, tracker.getHistogram(LatencyTracker.STAGE_TO_WIRE).getMax());
+        assertEquals(40000, tracker.getHistogram(LatencyTracker.STAGE_ROUND_TRIP).getMax());
+    }
+
+    @Test
+    public void inputIsCarriedByTheNextCommandOnly() {
+        tracker.markInput(1000, 2000);
+        /* Later input before the command is sent does not reset the clock */
+        tracker.markInput(1500, 2500);
+        send(1, 1, 10000, 11000);
+        send(1, 1, 20000, 21000);
+        assertEquals(1, tracker.getHistogram(LatencyTracker.STAGE_INPUT).getCount());
+        assertEquals(8000, tracker.getHistogram(LatencyTracker.STAGE_QUEUE).getMax());
+        assertEquals(2, tracker.getHistogram(LatencyTracker.STAGE_WRITE).getCount());
+    }
+
+    @Test
+    public void telemetryMatchesTheOldestCommandInOrder() {
+        send(5, 5, 1000, 1500);
+        send(5, 5, 2000, 2500);
+        tracker.onTelemetry(5, 5, 11000);
+        tracker.onTelemetry(5, 5, 12000);
+        LatencyHistogram roundTrip = tracker.getHistogram(LatencyTracker.STAGE_ROUND_TRIP);
+        assertEquals(2, roundTrip.getCount());
+        assertEquals(10000, roundTrip.getMax());
+        assertEquals(0, tracker.getUnanswered());
+    }
+
+    @Test
+    public void skippedCommandsAreUnanswered() {
+        send(1, 1, 1000, 1500);
+        send(2, 2, 2000, 2500);
+        send(3, 3, 3000, 3500);
+        tracker.onTelemetry(3, 3, 5000);
+        assertEquals(2000, tracker.getHistogram(LatencyTracker.STAGE_ROUND_TRIP).getMax());
+        assertEquals(2, tracker.getUnanswered());
+
+        /* Nothing left in flight to match */
+        tracker.onTelemetry(1, 1, 6000);
+        assertEquals(1, tracker.getUnmatched());
+    }
+
+    @Test
+    public void answerCanArriveBeforeTheWriteReturns() {
+        long sequence = tracker.onEncoded(7, 7, 0);
+        tracker.onTelemetry(7, 7, 1000);
+        tracker.onWritten(sequence, 2000);
+        assertEquals(1000, tracker.getHistogram(LatencyTracker.STAGE_ROUND_TRIP).getMax());
+        assertEquals(2000, tracker.getHistogram(LatencyTracker.STAGE_WRITE).getMax());
+        assertEquals(0, tracker.getUnmatched());
+    }
+
+    @Test
+    public void oldCommandsAreOverwritten() {
+        for (int i = 0; i < 1000; ++i) {
+            send(i, i, 0, 1);
+        }
+        assertEquals(1000 - 256, tracker.getUnanswered());
+        tracker.onTelemetry(999, 999, 2);
+        assertEquals(1, tracker.getHistogram(LatencyTracker.STAGE_ROUND_TRIP).getCount());
+        assertEquals(999, tracker.getUnanswered());
+    }
+
+    @Test
+    public void discardedCommandsAreNotMatched() {
+        send(4, 4, 0, 1000);
+        tracker.discardInFlight();
+        tracker.onTelemetry(4, 4, 2000);
+        assertEquals(0, tracker.getHistogram(LatencyTracker.STAGE_ROUND_TRIP).getCount());
+        assertEquals(1, tracker.getUnanswered());
+    }
+
+    @Test
+    public void exportsAllStages() {
+        send(1, 1, 0, 1000);
+        StringBuilder report = new StringBuilder();
+        tracker.export(report);
+        for (int i = 0; i < LatencyTracker.STAGE_COUNT; ++i) {
+            assertTrue(report.toString().contains(LatencyTracker.getStageName(i) + ": n="));
+        }
+        tracker.reset();
+        assertEquals(0, tracker.getHistogram(LatencyTracker.STAGE_WRITE).getCount());
+    }
+}
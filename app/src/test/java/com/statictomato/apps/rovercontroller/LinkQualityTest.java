@@ -0,0 +1,76 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LinkQualityTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final LinkQuality quality = new LinkQuality();
+
+    @Test
+    public void firstSampleIsTakenAsIs() {
+        quality.onRoundTrip(40 * MS, 0);
+        quality.onWrite(2 * MS, false);
+        assertEquals(40 * MS, quality.getRoundTripNanos());
+        assertEquals(2 * MS, quality.getWriteNanos());
+    }
+
+    @Test
+    public void roundTripMovesAnEighthPerSample() {
+        quality.onRoundTrip(40 * MS, 0);
+        quality.onRoundTrip(120 * MS, 0);
+        assertEquals(50 * MS, quality.getRoundTripNanos());
+    }
+
+    @Test
+    public void variationFollowsTheOldRoundTrip() {
+        quality.onRoundTrip(40 * MS, 0);
+        assertEquals(20 * MS, quality.getRoundTripVariationNanos());
+        /* A quarter of the way from 20 to |40 - 120|, before the round trip moves */
+        quality.onRoundTrip(120 * MS, 0);
+        assertEquals(35 * MS, quality.getRoundTripVariationNanos());
+        assertEquals(50 * MS, quality.getRoundTripNanos());
+        quality.reset();
+        assertEquals(0, quality.getRoundTripVariationNanos());
+    }
+
+    @Test
+    public void unansweredCommandsRaiseTheLossRate() {
+        quality.onRoundTrip(MS, 0);
+        assertEquals(0, quality.getLossRate(), 0);
+        /* Half the commands lost */
+        for (int i = 1; i <= 100; ++i) {
+            quality.onRoundTrip(MS, i);
+        }
+        assertEquals(0.5, quality.getLossRate(), 0.05);
+        /* Recovers once everything is answered again */
+        for (int i = 0; i < 100; ++i) {
+            quality.onRoundTrip(MS, 100);
+        }
+        assertTrue(quality.getLossRate() < 0.01);
+    }
+
+    @Test
+    public void commandsUnansweredBeforeTheFirstReportDoNotCount() {
+        quality.onRoundTrip(MS, 50);
+        assertEquals(0, quality.getLossRate(), 0);
+        quality.reset();
+        quality.onRoundTrip(MS, 80);
+        assertEquals(0, quality.getLossRate(), 0);
+    }
+
+    @Test
+    public void stallsAreCounted() {
+        quality.onWrite(MS, false);
+        quality.onWrite(80 * MS, true);
+        assertEquals(1, quality.getStalls());
+        StringBuilder out = new StringBuilder();
+        quality.export(out);
+        assertTrue(out.toString().contains("stalls=1"));
+    }
+}
@@ -0,0 +1,86 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class OneEuroFilterTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static double deviation(float[] values, int from) {
+        double mean = 0;
+        for (int i = from; i < values.length; ++i) {
+            mean += values[i];
+        }
+        mean /= values.length - from;
+        double sum = 0;
+        for (int i = from; i < values.length; ++i) {
+            sum += (values[i] - mean) * (values[i] - mean);
+        }
+        return Math.sqrt(sum / (values.length - from));
+    }
+
+    private static float[] filter(OneEuroFilter filter, TouchTrace trace, float[] samples) {
+        float[] out = new float[trace.size()];
+        for (int i = 0; i < trace.size(); ++i) {
+            out[i] = (float) filter.filter(samples[i], trace.nanos[i]);
+        }
+        return out;
+    }
+
+    @Test
+    public void firstSamplePassesUnfiltered() {
+        OneEuroFilter filter = new OneEuroFilter(1.0, 0.01);
+        assertEquals(42, filter.filter(42, 0), 0);
+        assertEquals(0, filter.getDerivative(), 0);
+        filter.filter(100, 8 * MS);
+        filter.reset();
+        assertEquals(7, filter.filter(7, 16 * MS), 0);
+    }
+
+    @Test
+    public void jitterIsSmoothedWhenHeldStill() {
+        TouchTrace trace = TouchTrace.HOLD;
+        float[] out = filter(new OneEuroFilter(1.0, 0.02), trace, trace.y);
+        /* Once settled, the output jitters a fraction of the touch */
+        assertTrue(deviation(out, 8) < deviation(trace.y, 8) / 3);
+    }
+
+    @Test
+    public void fastMovesAreFollowedClosely() {
+        TouchTrace trace = TouchTrace.SWIPE;
+        final int last = trace.size() - 1;
+        float[] adaptive = filter(new OneEuroFilter(1.0, 0.02), trace, trace.y);
+        float[] fixed = filter(new OneEuroFilter(1.0, 0), trace, trace.y);
+        final float adaptiveLag = adaptive[last] - trace.y[last];
+        final float fixedLag = fixed[last] - trace.y[last];
+        /* Behind a 600 px/s swipe by less than 20 ms worth, where a fixed cutoff trails far behind */
+        assertTrue(adaptiveLag > 0 && adaptiveLag < 12);
+        assertTrue(fixedLag > 5 * adaptiveLag);
+    }
+
+    @Test
+    public void speedIsEstimated() {
+        TouchTrace trace = TouchTrace.SWIPE;
+        OneEuroFilter filter = new OneEuroFilter(1.0, 0.01);
+        filter(filter, trace, trace.y);
+        assertEquals(-600, filter.getDerivative(), 150);
+    }
+
+    @Test
+    public void repeatedTimestampsStayFinite() {
+        OneEuroFilter filter = new OneEuroFilter(1.0, 0.01);
+        filter.filter(0, 5 * MS);
+        double value = filter.filter(10, 5 * MS);
+        assertFalse(Double.isNaN(value) || Double.isInfinite(value));
+        assertTrue(value >= 0 && value <= 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cutoffMustBePositive() {
+        new OneEuroFilter(0, 0.01);
+    }
+}
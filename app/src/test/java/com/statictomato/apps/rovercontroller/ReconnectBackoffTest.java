@@ -0,0 +1,62 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ReconnectBackoffTest {
+
+    private final ReconnectBackoff backoff = new ReconnectBackoff(new Random(1));
+
+    @Test
+    public void firstAttemptIsImmediate() {
+        assertEquals(0, backoff.nextDelayMillis());
+        assertEquals(1, backoff.getAttempt());
+    }
+
+    @Test
+    public void delaysDoubleWithJitterUpToTheMaximum() {
+        backoff.setBounds(100, 1000);
+        backoff.nextDelayMillis();
+        long[] expected = {100, 200, 400, 800, 1000, 1000, 1000};
+        for (long delay : expected) {
+            long d = backoff.nextDelayMillis();
+            assertTrue(d + " for " + delay, d >= delay / 2 && d <= delay);
+        }
+    }
+
+    @Test
+    public void delaysAreJittered() {
+        backoff.setBounds(1000, 1000);
+        backoff.nextDelayMillis();
+        long first = backoff.nextDelayMillis();
+        boolean different = false;
+        for (int i = 0; i < 10; ++i) {
+            different |= backoff.nextDelayMillis() != first;
+        }
+        assertTrue(different);
+    }
+
+    @Test
+    public void manyAttemptsDoNotOverflow() {
+        for (int i = 0; i < 100; ++i) {
+            long d = backoff.nextDelayMillis();
+            assertTrue(d >= 0 && d <= ReconnectBackoff.DEFAULT_MAX_MILLIS);
+        }
+    }
+
+    @Test
+    public void resetStartsOver() {
+        backoff.nextDelayMillis();
+        backoff.nextDelayMillis();
+        backoff.reset();
+        assertEquals(0, backoff.nextDelayMillis());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidBounds() {
+        backoff.setBounds(1000, 100);
+    }
+}
@@ -0,0 +1,288 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Hammers the SerialLink state machine with connect(), stop() and writes from
+ * several threads at once, over stand-in transports that connect slowly, fail
+ * or drop the link at random.
+ */
+public class SerialLinkConcurrencyTest {
+
+    private static final int THREADS = 6;
+    private static final int OPERATIONS = 400;
+
+    private final List<Throwable> errors = new CopyOnWriteArrayList<>();
+    private Thread.UncaughtExceptionHandler previousHandler;
+    private StandInFactory factory;
+    private SerialLinkTest.RecordingListener listener;
+    private SerialLink link;
+
+    @Before
+    public void setUp() {
+        previousHandler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread t, Throwable e) {
+                errors.add(e);
+            }
+        });
+        factory = new StandInFactory();
+        listener = new SerialLinkTest.RecordingListener();
+        link = new SerialLink(listener);
+    }
+
+    @After
+    public void tearDown() {
+        link.stop();
+        factory.stopAll();
+        Thread.setDefaultUncaughtExceptionHandler(previousHandler);
+    }
+
+    /**
+     * Transport over a loopback pair with a SimulatedRover on the other end,
+     * which may connect slowly or fail to connect.
+     */
+    private static class StandInTransport implements Transport {
+
+        private final LoopbackTransport transport;
+        private final SimulatedRover rover;
+        private final long connectMillis;
+        private final boolean fails;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private StandInTransport(long connectMillis, boolean fails) {
+            LoopbackTransport[] pair = LoopbackTransport.createPair();
+            transport = pair[0];
+            rover = new SimulatedRover(pair[1]);
+            this.connectMillis = connectMillis;
+            this.fails = fails;
+        }
+
+        @Override
+        public void connect() throws IOException {
+            try {
+                Thread.sleep(connectMillis);
+            } catch (InterruptedException e) {
+                throw new IOException("Interrupted");
+            }
+            if (fails || closed.get()) {
+                throw new IOException("Unreachable");
+            }
+            rover.start();
+            transport.connect();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return transport.getInputStream();
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return transport.getOutputStream();
+        }
+
+        @Override
+        public void close() {
+            closed.set(true);
+            transport.close();
+        }
+
+        @Override
+        public String getName() {
+            return "stand-in";
+        }
+
+        boolean isClosed() {
+            return closed.get();
+        }
+    }
+
+    private static class StandInFactory implements Transport.Factory {
+
+        final List<StandInTransport> created = new CopyOnWriteArrayList<>();
+        final Random random = new Random(7);
+
+        @Override
+        public Transport create() {
+            StandInTransport transport;
+            synchronized (random) {
+                transport = new StandInTransport(random.nextInt(3), random.nextInt(4) == 0);
+            }
+            created.add(transport);
+            return transport;
+        }
+
+        void dropRandomLink() {
+            if (created.isEmpty()) {
+                return;
+            }
+            int i;
+            synchronized (random) {
+                i = random.nextInt(created.size());
+            }
+            created.get(i).rover.stop();
+        }
+
+        void stopAll() {
+            for (StandInTransport transport : created) {
+                transport.rover.stop();
+            }
+        }
+    }
+
+    private void hammer(final boolean autoReconnect) throws Exception {
+        link.setAutoReconnect(autoReconnect);
+        link.getReconnectBackoff().setBounds(1, 5);
+        final CountDownLatch go = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        final AtomicInteger badStates = new AtomicInteger();
+        for (int t = 0; t < THREADS; ++t) {
+            final Random random = new Random(t);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        go.await();
+                        for (int i = 0; i < OPERATIONS; ++i) {
+                            switch (random.nextInt(8)) {
+                                case 0:
+                                    link.connect(factory);
+                                    break;
+                                case 1:
+                                    link.stop();
+                                    break;
+                                case 2:
+                                    factory.dropRandomLink();
+                                    break;
+                                case 3:
+                                    link.emergencyStop();
+                                    break;
+                                case 4:
+                                    link.publishButton(random.nextInt(CommandCodec.BUTTON_COUNT), random.nextBoolean());
+                                    break;
+                                default:
+                                    link.publishDrive(random.nextInt(511) - 255, random.nextInt(511) - 255);
+                                    break;
+                            }
+                            int state = link.getState();
+                            if (state < SerialLink.STATE_STANDBY || state > SerialLink.STATE_RECONNECTING) {
+                                badStates.incrementAndGet();
+                            }
+                            if (random.nextInt(4) == 0) {
+                                Thread.sleep(1);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+            thread.start();
+        }
+        go.countDown();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        link.stop();
+
+        assertEquals(0, badStates.get());
+        assertEquals(SerialLink.STATE_STANDBY, link.getState());
+        assertLastReportedState(SerialLink.STATE_STANDBY);
+
+        /* Every transport is closed once stopped, including abandoned attempts */
+        long deadline = System.currentTimeMillis() + 2000;
+        while (openTransports() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, openTransports());
+        assertEquals(SerialLink.STATE_STANDBY, link.getState());
+        assertTrue(errors.toString(), errors.isEmpty());
+    }
+
+    private int openTransports() {
+        int open = 0;
+        for (StandInTransport transport : factory.created) {
+            if (!transport.isClosed()) {
+                ++open;
+            }
+        }
+        return open;
+    }
+
+    private void assertLastReportedState(int state) {
+        Integer last = null;
+        Integer s;
+        while ((s = listener.states.poll()) != null) {
+            assertTrue("Unknown state " + s, s >= SerialLink.STATE_STANDBY && s <= SerialLink.STATE_RECONNECTING);
+            last = s;
+        }
+        if (last != null) {
+            assertEquals(state, (int) last);
+        }
+    }
+
+    @Test
+    public void concurrentConnectStopAndPublish() throws Exception {
+        hammer(false);
+    }
+
+    @Test
+    public void concurrentConnectStopAndPublishWhileReconnecting() throws Exception {
+        hammer(true);
+    }
+
+    @Test
+    public void linkIsUsableAfterTheHammering() throws Exception {
+        hammer(true);
+
+        LoopbackTransport[] pair = LoopbackTransport.createPair();
+        SimulatedRover rover = new SimulatedRover(pair[1]);
+        rover.start();
+        try {
+            link.connect(pair[0]);
+            listener.awaitState(SerialLink.STATE_CONNECTED);
+            long deadline = System.currentTimeMillis() + 1000;
+            while (rover.getLeft() != 42 && System.currentTimeMillis() < deadline) {
+                link.publishDrive(42, -42);
+                Thread.sleep(10);
+            }
+            assertEquals(42, rover.getLeft());
+            assertEquals(-42, rover.getRight());
+        } finally {
+            link.stop();
+            rover.stop();
+        }
+    }
+
+    @Test
+    public void onlyForwardTransitionsAreAllowed() {
+        assertTrue(SerialLink.isTransition(SerialLink.STATE_CONNECTING, SerialLink.STATE_CONNECTED));
+        assertTrue(SerialLink.isTransition(SerialLink.STATE_RECONNECTING, SerialLink.STATE_CONNECTED));
+        assertTrue(SerialLink.isTransition(SerialLink.STATE_CONNECTING, SerialLink.STATE_DISCONNECTING));
+        assertTrue(SerialLink.isTransition(SerialLink.STATE_CONNECTED, SerialLink.STATE_DISCONNECTING));
+        assertTrue(SerialLink.isTransition(SerialLink.STATE_DISCONNECTING, SerialLink.STATE_STANDBY));
+
+        assertFalse(SerialLink.isTransition(SerialLink.STATE_CONNECTED, SerialLink.STATE_CONNECTING));
+        assertFalse(SerialLink.isTransition(SerialLink.STATE_CONNECTED, SerialLink.STATE_STANDBY));
+        assertFalse(SerialLink.isTransition(SerialLink.STATE_DISCONNECTING, SerialLink.STATE_CONNECTED));
+        assertFalse(SerialLink.isTransition(SerialLink.STATE_STANDBY, SerialLink.STATE_CONNECTED));
+        assertFalse(SerialLink.isTransition(SerialLink.STATE_CONNECTED, SerialLink.STATE_CONNECTED));
+    }
+}
@@ -0,0 +1,619 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the SerialLink headless over in-process and localhost transports.
+ */
+public class SerialLinkTest {
+
+    private RecordingListener listener;
+    private SerialLink link;
+
+    @Before
+    public void setUp() {
+        listener = new RecordingListener();
+        link = new SerialLink(listener);
+        /* Tests of the legacy format select it themselves */
+        link.setCommandFormat(CommandCodec.FORMAT_BINARY);
+    }
+
+    @After
+    public void tearDown() {
+        link.stop();
+    }
+
+    @Test
+    public void connectsAndReceivesFrames() throws Exception {
+        LoopbackTransport[] pair = LoopbackTransport.createPair();
+        link.connect(pair[0]);
+        listener.awaitState(SerialLink.STATE_CONNECTED);
+        assertEquals("loopback", listener.name);
+
+        byte[] telemetry = "S0,100,1,50ES1,".getBytes();
+        pair[1].getOutputStream().write(telemetry);
+        assertEquals("0,100,1,50", listener.frames.poll(1, TimeUnit.SECONDS));
+        pair[1].getOutputStream().write("2,0,3E".getBytes());
+        assertEquals("1,2,0,3", listener.frames.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void telemetryIsDecodedOnTheReadingThread() throws Exception {
+        LoopbackTransport[] pair = LoopbackTransport.createPair();
+        link.connect(pair[0]);
+        listener.awaitState(SerialLink.STATE_CONNECTED);
+
+        pair[1].getOutputStream().write("S0,100,1,50ESnot telemetryES1,7,0,255E".getBytes());
+        assertEquals("100,-50", listener.wheels.poll(1, TimeUnit.SECONDS));
+        assertEquals("-7,255", listener.wheels.poll(1, TimeUnit.SECONDS));
+        /* Every frame is still reported as it is */
+        assertEquals("0,100,1,50", listener.frames.poll(1, TimeUnit.SECONDS));
+        assertEquals("not telemetry", listener.frames.poll(1, TimeUnit.SECONDS));
+        assertEquals("1,7,0,255", listener.frames.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void sendsPublishedDriveCommands() throws Exception {
+        LoopbackTransport[] pair = LoopbackTransport.createPair();
+        link.connect(pair[0]);
+        listener.awaitState(SerialLink.STATE_CONNECTED);
+
+        link.publishDrive(200, -100);
+        CommandCodec.DriveCommand command = readDrive(pair[1].getInputStream());
+        assertEquals(200, command.left);
+        assertEquals(-100, command.right);
+
+        link.setCommandFormat(CommandCodec.FORMAT_LEGACY);
+        link.publishDrive(-5, 6);
+        command = readDrive(pair[1].getInputStream());
+        assertEquals(-1, command.sequence);
+        assertEquals(-5, command.left);
+        assertEquals(6, command.right);
+    }
+
+    @Test
+    public void remoteCloseIsConnectionLost() throws Exception {
+        LoopbackTransport[] pair = LoopbackTransport.createPair();
+        link.connect(pair[0]);
+        listener.awaitState(SerialLink.STATE_CONNECTED);
+        pair[1].close();
+        assertTrue(listener.lost.await(1, TimeUnit.SECONDS));
+        listener.awaitState(SerialLink.STATE_STANDBY);
+        assertEquals(SerialLink.STATE_STANDBY, link.getState());
+    }
+
+    @Test
+    public void failedConnectReturnsToStandby() throws Exception {
+        LoopbackTransport[] pair = LoopbackTransport.createPair();
+        pair[1].close();
+        link.connect(pair[0]);
+        assertTrue(listener.failed.await(1, TimeUnit.SECONDS));
+        listener.awaitState(SerialLink.STATE_STANDBY);
+    }
+
+    @Test
+    public void stopDoesNotReportLoss() throws Exception {
+        LoopbackTransport[] pair = LoopbackTransport.createPair();
+        link.connect(pair[0]);
+        listener.awaitState(SerialLink.STATE_CONNECTED);
+        link.stop();
+        assertEquals(SerialLink.STATE_STANDBY, link.getState());
+        assertEquals(-1, pair[1].getInputStream().read());
+        assertEquals(1, listener.lost.getCount());
+    }
+
+    @Test
+    public void runsOverTcp() throws Exception {
+        final ServerSocket server = new ServerSocket(0);
+        try {
+            link.connect(new TcpTransport("127.0.0.1", server.getLocalPort()));
+            Socket rover = server.accept();
+            listener.awaitState(SerialLink.STATE_CONNECTED);
+
+            link.publishDrive(1, 2);
+            CommandCodec.DriveCommand command = readDrive(rover.getInputStream());
+            assertEquals(1, command.left);
+            assertEquals(2, command.right);
+
+            OutputStream out = rover.getOutputStream();
+            out.write("S1,2,3,4E".getBytes());
+            out.flush();
+            assertEquals("1,2,3,4", listener.frames.poll(1, TimeUnit.SECONDS));
+            rover.close();
+            assertTrue(listener.lost.await(1, TimeUnit.SECONDS));
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void silentRoverIsLostWithinTheTimeout() throws Exception {
+        LoopbackTransport[] pair = LoopbackTransport.createPair();
+        link.connect(pair[0]);
+        listener.awaitState(SerialLink.STATE_CONNECTED);
+        long connected = System.nanoTime();
+
+        /* The rover end never answers */
+        assertTrue(listener.lost.await(1, TimeUnit.SECONDS));
+        long detected = System.nanoTime() - connected;
+        listener.awaitState(SerialLink.STATE_STANDBY);
+        assertTrue(detected >= TimeUnit.MILLISECONDS.toNanos(HeartbeatWatchdog.DEFAULT_TIMEOUT_MILLIS));
+        assertTrue(detected < TimeUnit.MILLISECONDS.toNanos(600));
+        assertEquals(1, link.getHeartbeatWatchdog().getTimeouts());
+        assertEquals(1, link.getHeartbeatWatchdog().getDetectionHistogram().getCount());
+
+        /* Heartbeats were sent meanwhile, followed by a stop command */
+        CommandCodec.DriveCommand command = readDrive(pair[1].getInputStream());
+        assertEquals(0, command.left);
+        assertEquals(0, command.right);
+        assertEquals(-1, pair[1].getInputStream().read());
+    }
+
+    @Test
+    public void heartbeatsKeepAnIdleLinkAlive() throws Exception {
+        LoopbackTransport[] pair = LoopbackTransport.createPair();
+        SimulatedRover rover = new SimulatedRover(pair[1]);
+        rover.start();
+        try {
+            link.connect(pair[0]);
+            listener.awaitState(SerialLink.STATE_CONNECTED);
+            /* No drive commands at all */
+            Thread.sleep(1000);
+            assertEquals(SerialLink.STATE_CONNECTED, link.getState());
+            assertEquals(1, listener.lost.getCount());
+            assertTrue(rover.getHeartbeatsReceived() >= 5);
+            /* Heartbeats are not passed on as frames */
+            assertTrue(listener.frames.isEmpty());
+
+            rover.setSilent(true);
+            assertTrue(listener.lost.await(1, TimeUnit.SECONDS));
+        } finally {
+            rover.stop();
+        }
+    }
+
+    @Test
+    public void legacyHeartbeatRepeatsTheLastCommand() throws Exception {
+        LoopbackTransport[] pair = LoopbackTransport.createPair();
+        link.setCommandFormat(CommandCodec.FORMAT_LEGACY);
+        link.connect(pair[0]);
+        listener.awaitState(SerialLink.STATE_CONNECTED);
+        link.publishDrive(50, 60);
+        InputStream in = pair[1].getInputStream();
+        readDrive(in);
+        /* Published once, repeated while quiet */
+        CommandCodec.DriveCommand command = readDrive(in);
+        assertEquals(50, command.left);
+        assertEquals(60, command.right);
+    }
+
+    @Test
+    public void idleLegacyLinkIsKeptAliveAtTheKeepaliveInterval() throws Exception {
+        LoopbackTransport[] pair = LoopbackTransport.createPair();
+        SimulatedRover rover = new SimulatedRover(pair[1]);
+        rover.start();
+        try {
+            link.setCommandFormat(CommandCodec.FORMAT_LEGACY);
+            link.setChangeDriven(true);
+            link.connect(pair[0]);
+            listener.awaitState(SerialLink.STATE_CONNECTED);
+            link.publishDrive(50, 60);
+
+            /* Idle sticks, the same command published on every 10 ms tick */
+            final long keepalive = link.getChangeFilter().getKeepaliveMillis();
+            final long idle = 3 * keepalive;
+            final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(idle);
+            while (System.nanoTime() < end) {
+                link.publishDrive(50, 60);
+                Thread.sleep(10);
+            }
+            assertEquals(SerialLink.STATE_CONNECTED, link.getState());
+            assertEquals(1, listener.lost.getCount());
+            /* The first command, then at most one repeat per keepalive interval */
+            final long received = rover.getCommandsReceived();
+            assertTrue(received >= 2);
+            assertTrue(received <= 1 + idle / keepalive);
+            assertEquals(50, rover.getLeft());
+            /* Every repeat is counted as sent, the rest as suppressed. A frame is
+               counted after it is written, so the last one may not be yet */
+            final long sent = link.getChangeFilter().getSent();
+            assertTrue(sent + 1 >= received);
+            assertTrue(sent <= 2 + idle / keepalive);
+            assertTrue(link.getChangeFilter().getSuppressed() > idle / 20);
+        } finally {
+            rover.stop();
+        }
+    }
+
+    @Test
+    public void disabledHeartbeatNeverTimesOut() throws Exception {
+        LoopbackTransport[] pair = LoopbackTransport.createPair();
+        link.setHeartbeatTimeout(0);
+        link.connect(pair[0]);
+        listener.awaitState(SerialLink.STATE_CONNECTED);
+        Thread.sleep(500);
+        assertEquals(SerialLink.STATE_CONNECTED, link.getState());
+        assertEquals(0, pair[1].getInputStream().available());
+    }
+
+    @Test
+    public void emergencyStopOvertakesQueuedCommands() throws Exception {
+        /* Room for one drive frame, so the writer blocks on the next */
+        LoopbackTransport[] pair = LoopbackTransport.createPair(CommandCodec.DRIVE_FRAME_LENGTH + 4);
+        link.setHeartbeatTimeout(0);
+        link.connect(pair[0]);
+        listener.awaitState(SerialLink.STATE_CONNECTED);
+
+        link.publishDrive(1, 1);
+        Thread.sleep(50);
+        link.publishDrive(2, 2);
+        Thread.sleep(50);
+        link.publishDrive(3, 3);
+        link.emergencyStop();
+
+        InputStream in = pair[1].getInputStream();
+        assertEquals(1, readDrive(in).left);
+        assertEquals(2, readDrive(in).left);
+        CommandCodec.DriveCommand command = readDrive(in);
+        assertEquals(0, command.left);
+        assertEquals(0, command.right);
+        Thread.sleep(50);
+        assertEquals(0, in.available());
+        assertEquals(1, link.getMailbox().getDiscarded());
+        assertEquals(1, link.getStopTimes().getCount());
+    }
+
+    @Test
+    public void emergencyStopIsTimed() throws Exception {
+        LoopbackTransport[] pair = LoopbackTransport.createPair();
+        link.connect(pair[0]);
+        listener.awaitState(SerialLink.STATE_CONNECTED);
+
+        link.emergencyStop();
+        CommandCodec.DriveCommand command = readDrive(pair[1].getInputStream());
+        assertEquals(0, command.left);
+        assertEquals(0, command.right);
+        long deadline = System.currentTimeMillis() + 1000;
+        while (link.getStopTimes().getCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, link.getStopTimes().getCount());
+        assertTrue(link.getStopTimes().getMax() > 0);
+        assertTrue(link.getStopTimes().getMax() < TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    @Test
+    public void buttonEventsOvertakeThePendingCommandInOrder() throws Exception {
+        /* Room for one drive frame, so the writer blocks on the next */
+        LoopbackTransport[] pair = LoopbackTransport.createPair(CommandCodec.DRIVE_FRAME_LENGTH + 4);
+        link.setHeartbeatTimeout(0);
+        link.connect(pair[0]);
+        listener.awaitState(SerialLink.STATE_CONNECTED);
+
+        link.publishDrive(1, 1);
+        Thread.sleep(50);
+        link.publishDrive(2, 2);
+        Thread.sleep(50);
+        link.publishDrive(3, 3);
+        link.publishButton(CommandCodec.BUTTON_A, true);
+        link.publishButton(CommandCodec.BUTTON_A, false);
+        link.publishButton(CommandCodec.BUTTON_B, true);
+
+        InputStream in = pair[1].getInputStream();
+        assertEquals(1, readDrive(in).left);
+        assertEquals(2, readDrive(in).left);
+        /* Every edge on its own, none merged with the others */
+        CommandCodec.ButtonEvent event = readButton(in);
+        assertEquals(CommandCodec.BUTTON_A, event.button);
+        assertTrue(event.pressed);
+        event = readButton(in);
+        assertEquals(CommandCodec.BUTTON_A, event.button);
+        assertFalse(event.pressed);
+        event = readButton(in);
+        assertEquals(CommandCodec.BUTTON_B, event.button);
+        assertTrue(event.pressed);
+        /* The drive command was left waiting, not discarded */
+        assertEquals(3, readDrive(in).left);
+        assertEquals(3, link.getButtonTimes().getCount());
+    }
+
+    @Test
+    public void buttonEventIsSentWithoutADriveCommand() throws Exception {
+        LoopbackTransport[] pair = LoopbackTransport.createPair();
+        link.setHeartbeatTimeout(0);
+        link.connect(pair[0]);
+        listener.awaitState(SerialLink.STATE_CONNECTED);
+
+        final long pressed = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5);
+        assertTrue(link.publishButton(CommandCodec.BUTTON_Y, true, pressed));
+        CommandCodec.ButtonEvent event = readButton(pair[1].getInputStream());
+        assertEquals(CommandCodec.BUTTON_Y, event.button);
+        assertTrue(event.pressed);
+        long deadline = System.currentTimeMillis() + 1000;
+        while (link.getButtonTimes().getCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        /* Timed from the press given, not from the post */
+        assertEquals(1, link.getButtonTimes().getCount());
+        assertTrue(link.getButtonTimes().getMax() >= TimeUnit.MILLISECONDS.toNanos(5));
+        assertTrue(link.getButtonTimes().getMax() < TimeUnit.MILLISECONDS.toNanos(500));
+        /* Kept apart from the drive commands' latency */
+        assertEquals(0, link.getStopTimes().getCount());
+    }
+
+    @Test
+    public void legacyFormatSkipsButtonEvents() throws Exception {
+        LoopbackTransport[] pair = LoopbackTransport.createPair();
+        link.setCommandFormat(CommandCodec.FORMAT_LEGACY);
+        link.setHeartbeatTimeout(0);
+        link.connect(pair[0]);
+        listener.awaitState(SerialLink.STATE_CONNECTED);
+
+        for (int button = 0; button < CommandCodec.BUTTON_COUNT; ++button) {
+            link.publishButton(button, true);
+            link.publishButton(button, false);
+        }
+        /* Sent after the events, which go first */
+        link.publishDrive(7, 7);
+
+        /* Only the ASCII drive command on the wire, no button frame before it */
+        InputStream in = pair[1].getInputStream();
+        StringBuilder wire = new StringBuilder();
+        int b;
+        while ((b = in.read()) != CommandCodec.END) {
+            assertTrue("End of stream", b >= 0);
+            assertTrue("Byte 0x" + Integer.toHexString(b) + " in the legacy stream",
+                    b != CommandCodec.TYPE_BUTTON && b < 0x80);
+            wire.append((char) b);
+        }
+        assertEquals("S0,7,0,7", wire.toString());
+        assertEquals(2 * CommandCodec.BUTTON_COUNT, link.getSkippedButtons());
+        assertEquals(0, link.getButtonTimes().getCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownButton() {
+        link.publishButton(CommandCodec.BUTTON_COUNT, true);
+    }
+
+    /**
+     * Creates loopback transports with a SimulatedRover on the other end, the
+     * first ones with the rover unreachable.
+     */
+    private static class RoverFactory implements Transport.Factory {
+
+        final BlockingQueue<SimulatedRover> rovers = new LinkedBlockingQueue<>();
+        final AtomicInteger created = new AtomicInteger();
+        volatile int unreachable;
+        volatile SimulatedRover latest;
+
+        @Override
+        public Transport create() {
+            LoopbackTransport[] pair = LoopbackTransport.createPair();
+            if (created.incrementAndGet() <= unreachable) {
+                pair[1].close();
+                return pair[0];
+            }
+            SimulatedRover rover = new SimulatedRover(pair[1]);
+            try {
+                rover.start();
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            rovers.add(rover);
+            latest = rover;
+            return pair[0];
+        }
+
+        void stopAll() {
+            for (SimulatedRover rover : rovers) {
+                rover.stop();
+            }
+        }
+    }
+
+    @Test
+    public void reconnectsAfterTheLinkIsLost() throws Exception {
+        RoverFactory factory = new RoverFactory();
+        try {
+            link.setAutoReconnect(true);
+            link.connect(factory);
+            listener.awaitState(SerialLink.STATE_CONNECTED);
+
+            factory.rovers.take().stop();
+            assertTrue(listener.lost.await(1, TimeUnit.SECONDS));
+            listener.awaitState(SerialLink.STATE_RECONNECTING);
+            listener.awaitState(SerialLink.STATE_CONNECTED);
+            assertEquals(2, factory.created.get());
+            assertEquals(1, link.getReconnects());
+            assertTrue(link.getReconnectTimes().getMax() < TimeUnit.MILLISECONDS.toNanos(500));
+
+            /* The new connection carries commands */
+            long deadline = System.currentTimeMillis() + 1000;
+            while (factory.latest.getLeft() != 10 && System.currentTimeMillis() < deadline) {
+                link.publishDrive(10, 20);
+                Thread.sleep(20);
+            }
+            assertEquals(10, factory.latest.getLeft());
+        } finally {
+            link.stop();
+            factory.stopAll();
+        }
+    }
+
+    @Test
+    public void failedReconnectAttemptsBackOffAndRetry() throws Exception {
+        RoverFactory factory = new RoverFactory();
+        try {
+            link.setAutoReconnect(true);
+            link.getReconnectBackoff().setBounds(50, 100);
+            link.connect(factory);
+            listener.awaitState(SerialLink.STATE_CONNECTED);
+
+            factory.unreachable = 3;
+            factory.rovers.take().stop();
+            /* Attempts 2 and 3 fail, 4 succeeds after two backoff delays */
+            long deadline = System.currentTimeMillis() + 2000;
+            while (link.getReconnects() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(1, link.getReconnects());
+            assertEquals(4, factory.created.get());
+            assertEquals(SerialLink.STATE_CONNECTED, link.getState());
+            assertTrue(link.getReconnectTimes().getMax() >= TimeUnit.MILLISECONDS.toNanos(25 + 50));
+            /* Failed reconnect attempts are not reported */
+            assertEquals(1, listener.failed.getCount());
+        } finally {
+            link.stop();
+            factory.stopAll();
+        }
+    }
+
+    @Test
+    public void stopEndsReconnecting() throws Exception {
+        RoverFactory factory = new RoverFactory();
+        try {
+            link.setAutoReconnect(true);
+            link.getReconnectBackoff().setBounds(50, 50);
+            link.connect(factory);
+            listener.awaitState(SerialLink.STATE_CONNECTED);
+
+            factory.unreachable = Integer.MAX_VALUE;
+            factory.rovers.take().stop();
+            Thread.sleep(200);
+            link.stop();
+            int created = factory.created.get();
+            Thread.sleep(200);
+            assertEquals(created, factory.created.get());
+            assertEquals(SerialLink.STATE_STANDBY, link.getState());
+        } finally {
+            factory.stopAll();
+        }
+    }
+
+    @Test
+    public void singleTransportIsNotReconnected() throws Exception {
+        LoopbackTransport[] pair = LoopbackTransport.createPair();
+        link.setAutoReconnect(true);
+        link.connect(pair[0]);
+        listener.awaitState(SerialLink.STATE_CONNECTED);
+        pair[1].close();
+        assertTrue(listener.lost.await(1, TimeUnit.SECONDS));
+        listener.awaitState(SerialLink.STATE_STANDBY);
+    }
+
+    /**
+     * Read from the rover end until a drive command has been decoded.
+     */
+    static CommandCodec.DriveCommand readDrive(InputStream in) throws IOException {
+        final CommandCodec.DriveCommand command = new CommandCodec.DriveCommand();
+        final boolean[] decoded = new boolean[1];
+        FrameDecoder decoder = new FrameDecoder(CommandCodec.START, CommandCodec.END,
+                new FrameDecoder.FrameListener() {
+                    @Override
+                    public void onFrame(byte[] frame, int length) {
+                        decoded[0] |= CommandCodec.decodeDrive(frame, length, command);
+                    }
+                });
+        byte[] b = new byte[1];
+        /* Byte by byte, so nothing following the command is consumed */
+        while (!decoded[0]) {
+            if (in.read(b) < 0) {
+                throw new IOException("End of stream");
+            }
+            decoder.feed(b, 0, 1);
+        }
+        return command;
+    }
+
+    /* The next button event, which no drive command may precede */
+    static CommandCodec.ButtonEvent readButton(InputStream in) throws IOException {
+        final CommandCodec.ButtonEvent event = new CommandCodec.ButtonEvent();
+        final CommandCodec.DriveCommand command = new CommandCodec.DriveCommand();
+        final boolean[] decoded = new boolean[1];
+        FrameDecoder decoder = new FrameDecoder(CommandCodec.START, CommandCodec.END,
+                new FrameDecoder.FrameListener() {
+                    @Override
+                    public void onFrame(byte[] frame, int length) {
+                        if (CommandCodec.decodeDrive(frame, length, command)) {
+                            throw new AssertionError("Drive command " + command.left + " before the button event");
+                        }
+                        decoded[0] |= CommandCodec.decodeButton(frame, length, event);
+                    }
+                });
+        byte[] b = new byte[1];
+        while (!decoded[0]) {
+            if (in.read(b) < 0) {
+                throw new IOException("End of stream");
+            }
+            decoder.feed(b, 0, 1);
+        }
+        return event;
+    }
+
+    static class RecordingListener implements SerialLink.Listener {
+
+        final BlockingQueue<Integer> states = new LinkedBlockingQueue<>();
+        final BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+        final BlockingQueue<String> wheels = new LinkedBlockingQueue<>();
+        final CountDownLatch failed = new CountDownLatch(1);
+        final CountDownLatch lost = new CountDownLatch(1);
+        volatile String name;
+
+        void awaitState(int state) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 1000;
+            while (System.currentTimeMillis() < deadline) {
+                Integer s = states.poll(10, TimeUnit.MILLISECONDS);
+                if (s != null && s == state) {
+                    return;
+                }
+            }
+            fail("State " + state + " not reached");
+        }
+
+        @Override
+        public void onStateChanged(int state) {
+            states.add(state);
+        }
+
+        @Override
+        public void onConnected(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void onFrame(byte[] frame, int length) {
+            frames.add(new String(frame, 0, length));
+        }
+
+        @Override
+        public void onTelemetry(int left, int right) {
+            wheels.add(left + "," + right);
+        }
+
+        @Override
+        public void onConnectionFailed() {
+            failed.countDown();
+        }
+
+        @Override
+        public void onConnectionLost() {
+            lost.countDown();
+        }
+    }
+}
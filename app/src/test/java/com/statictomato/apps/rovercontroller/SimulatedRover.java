@@ -0,0 +1,371 @@
+package com.statictomato.apps.rovercontroller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in for the rover firmware, for tests and load tests on the JVM.
+ *
+ * Speaks the S...E protocol over a Transport: drive commands are decoded in both
+ * the binary and the legacy format and applied to a differential drive model, and
+ * every command is answered with a "dir,speed,dir,speed" telemetry frame of the
+ * current wheel speeds, as shown by MainActivity. Heartbeats are echoed back.
+ *
+ * The link to the controller can be degraded with limited bandwidth, latency and
+ * random byte corruption, applied in both directions. Limited bandwidth is
+ * modelled by reading slowly, so a controller that sends too much is pushed back
+ * by the transport like it would be by a congested radio. The rover can also be
+ * made silent, ignoring everything without closing the link, like a rover that
+ * drove out of radio range.
+ */
+public class SimulatedRover {
+
+    public static final double WHEEL_BASE = 0.2;      // m
+    public static final double MAX_WHEEL_SPEED = 0.5; // m/s at 255
+
+    /**
+     * Link conditions, the defaults are a perfect link.
+     */
+    public static class LinkConditions {
+        /** Bytes per second in each direction, 0 for unlimited */
+        public int bandwidth;
+        /** One way latency */
+        public long latencyMillis;
+        /** Probability for every byte to be corrupted */
+        public double corruption;
+        public long seed = 1;
+
+        public LinkConditions bandwidth(int bytesPerSecond) {
+            bandwidth = bytesPerSecond;
+            return this;
+        }
+
+        public LinkConditions latency(long millis) {
+            latencyMillis = millis;
+            return this;
+        }
+
+        public LinkConditions corruption(double probability) {
+            corruption = probability;
+            return this;
+        }
+    }
+
+    public interface CommandListener {
+        /**
+         * Called on the rover thread for every drive command received.
+         */
+        void onCommand(int sequence, int left, int right);
+    }
+
+    private final Transport transport;
+    private final LinkConditions conditions;
+    private final Random random;
+
+    private final BlockingQueue<Chunk> incoming = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Chunk> outgoing = new LinkedBlockingQueue<>();
+    private final FrameDecoder decoder;
+    private final CommandCodec.DriveCommand command = new CommandCodec.DriveCommand();
+    private Thread[] threads;
+    private volatile boolean running;
+    private volatile boolean silent;
+    private volatile CommandListener commandListener;
+
+    /* Differential drive model */
+    private int left;
+    private int right;
+    private double x;
+    private double y;
+    private double heading;
+    private long lastUpdateNanos;
+
+    /* Statistics */
+    private volatile long commandsReceived;
+    private volatile long invalidFrames;
+    private volatile long telemetrySent;
+    private volatile long heartbeatsReceived;
+    private volatile long bytesReceived;
+    private volatile int lastSequence = -1;
+
+    public SimulatedRover(Transport transport) {
+        this(transport, new LinkConditions());
+    }
+
+    public SimulatedRover(Transport transport, LinkConditions conditions) {
+        this.transport = transport;
+        this.conditions = conditions;
+        this.random = new Random(conditions.seed);
+        this.decoder = new FrameDecoder(CommandCodec.START, CommandCodec.END, new FrameDecoder.FrameListener() {
+            @Override
+            public void onFrame(byte[] frame, int length) {
+                handleFrame(frame, length);
+            }
+        });
+    }
+
+    public void setCommandListener(CommandListener listener) {
+        commandListener = listener;
+    }
+
+    /**
+     * Ignore everything received and send nothing, or resume.
+     */
+    public void setSilent(boolean silent) {
+        this.silent = silent;
+    }
+
+    public void start() throws IOException {
+        transport.connect();
+        final InputStream in = transport.getInputStream();
+        final OutputStream out = transport.getOutputStream();
+        running = true;
+        lastUpdateNanos = System.nanoTime();
+        threads = new Thread[] {
+                new Thread("RoverReceiver") {
+                    @Override
+                    public void run() {
+                        receive(in);
+                    }
+                },
+                new Thread("RoverProcessor") {
+                    @Override
+                    public void run() {
+                        process();
+                    }
+                },
+                new Thread("RoverSender") {
+                    @Override
+                    public void run() {
+                        send(out);
+                    }
+                }
+        };
+        for (Thread t : threads) {
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    public void stop() {
+        running = false;
+        transport.close();
+        if (threads != null) {
+            for (Thread t : threads) {
+                t.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Read from the transport at the link bandwidth, corrupt and delay the bytes.
+     */
+    private void receive(InputStream in) {
+        final byte[] buffer = new byte[64];
+        final Pacer pacer = new Pacer();
+        try {
+            while (running) {
+                int n = in.read(buffer, 0, conditions.bandwidth > 0 ? 1 : buffer.length);
+                if (n < 0) {
+                    break;
+                }
+                bytesReceived += n;
+                pacer.pace(n);
+                incoming.put(new Chunk(corrupt(buffer, n), System.nanoTime()));
+            }
+        } catch (IOException | InterruptedException e) {
+            /* Stopped */
+        }
+        running = false;
+    }
+
+    /**
+     * Hand the received bytes to the decoder once their latency has passed.
+     */
+    private void process() {
+        try {
+            while (running) {
+                Chunk chunk = incoming.poll(10, TimeUnit.MILLISECONDS);
+                if (chunk != null && !silent) {
+                    chunk.await(conditions.latencyMillis);
+                    decoder.feed(chunk.data, 0, chunk.data.length);
+                }
+            }
+        } catch (InterruptedException e) {
+            /* Stopped */
+        }
+    }
+
+    /**
+     * Write the telemetry once its latency has passed, at the link bandwidth.
+     */
+    private void send(OutputStream out) {
+        final Pacer pacer = new Pacer();
+        try {
+            while (running) {
+                Chunk chunk = outgoing.poll(10, TimeUnit.MILLISECONDS);
+                if (chunk != null && !silent) {
+                    chunk.await(conditions.latencyMillis);
+                    pacer.pace(chunk.data.length);
+                    out.write(corrupt(chunk.data, chunk.data.length));
+                    out.flush();
+                    ++telemetrySent;
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            /* Stopped */
+        }
+    }
+
+    private void handleFrame(byte[] frame, int length) {
+        if (CommandCodec.isHeartbeat(frame, length)) {
+            ++heartbeatsReceived;
+            byte[] echo = new byte[length + 2];
+            echo[0] = (byte) CommandCodec.START;
+            System.arraycopy(frame, 0, echo, 1, length);
+            echo[length + 1] = (byte) CommandCodec.END;
+            outgoing.add(new Chunk(echo, System.nanoTime()));
+            return;
+        }
+        if (!CommandCodec.decodeDrive(frame, length, command)) {
+            ++invalidFrames;
+            return;
+        }
+        ++commandsReceived;
+        lastSequence = command.sequence;
+        CommandListener l = commandListener;
+        if (l != null) {
+            l.onCommand(command.sequence, command.left, command.right);
+        }
+        synchronized (this) {
+            update();
+            left = command.left;
+            right = command.right;
+        }
+        String telemetry = "" + CommandCodec.START
+                + CommandCodec.direction(command.left) + "," + CommandCodec.speed(command.left) + ","
+                + CommandCodec.direction(command.right) + "," + CommandCodec.speed(command.right)
+                + CommandCodec.END;
+        outgoing.add(new Chunk(telemetry.getBytes(), System.nanoTime()));
+    }
+
+    /**
+     * Integrate the pose with the current wheel speeds.
+     */
+    private void update() {
+        final long now = System.nanoTime();
+        final double dt = (now - lastUpdateNanos) / 1e9;
+        lastUpdateNanos = now;
+        final double vLeft = left * MAX_WHEEL_SPEED / 255;
+        final double vRight = right * MAX_WHEEL_SPEED / 255;
+        final double v = (vLeft + vRight) / 2;
+        heading += (vRight - vLeft) / WHEEL_BASE * dt;
+        x += v * Math.cos(heading) * dt;
+        y += v * Math.sin(heading) * dt;
+    }
+
+    private byte[] corrupt(byte[] data, int length) {
+        byte[] copy = new byte[length];
+        System.arraycopy(data, 0, copy, 0, length);
+        if (conditions.corruption > 0) {
+            for (int i = 0; i < length; ++i) {
+                if (random.nextDouble() < conditions.corruption) {
+                    copy[i] ^= (byte) (1 << random.nextInt(8));
+                }
+            }
+        }
+        return copy;
+    }
+
+    public synchronized int getLeft() {
+        return left;
+    }
+
+    public synchronized int getRight() {
+        return right;
+    }
+
+    public synchronized double getX() {
+        update();
+        return x;
+    }
+
+    public synchronized double getY() {
+        update();
+        return y;
+    }
+
+    public synchronized double getHeading() {
+        update();
+        return heading;
+    }
+
+    public int getLastSequence() {
+        return lastSequence;
+    }
+
+    public long getCommandsReceived() {
+        return commandsReceived;
+    }
+
+    /**
+     * Frames dropped by the decoder or failing to decode as a drive command.
+     */
+    public long getInvalidFrames() {
+        return invalidFrames + decoder.getFramesDropped();
+    }
+
+    public long getTelemetrySent() {
+        return telemetrySent;
+    }
+
+    public long getHeartbeatsReceived() {
+        return heartbeatsReceived;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Bytes stamped with the time they entered the link.
+     */
+    private static class Chunk {
+        private final byte[] data;
+        private final long nanos;
+
+        private Chunk(byte[] data, long nanos) {
+            this.data = data;
+            this.nanos = nanos;
+        }
+
+        private void await(long latencyMillis) throws InterruptedException {
+            long wait = nanos + TimeUnit.MILLISECONDS.toNanos(latencyMillis) - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    }
+
+    /**
+     * Limits the byte rate to the link bandwidth.
+     */
+    private class Pacer {
+        private long next = System.nanoTime();
+
+        private void pace(int bytes) throws InterruptedException {
+            if (conditions.bandwidth <= 0) {
+                return;
+            }
+            final long now = System.nanoTime();
+            next = Math.max(next, now) + TimeUnit.SECONDS.toNanos(bytes) / conditions.bandwidth;
+            if (next > now) {
+                TimeUnit.NANOSECONDS.sleep(next - now);
+            }
+        }
+    }
+}
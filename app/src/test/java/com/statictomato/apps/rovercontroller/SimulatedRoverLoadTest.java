@@ -0,0 +1,226 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the SerialLink against the SimulatedRover at high command rates,
+ * on a clean and on degraded links, and prints what got through.
+ */
+public class SimulatedRoverLoadTest {
+
+    private SerialLink link;
+    private SimulatedRover rover;
+    private CommandScheduler scheduler;
+    private final AtomicLong telemetry = new AtomicLong();
+    private final AtomicLong lastTelemetryNanos = new AtomicLong();
+    private volatile String lastTelemetry;
+
+    @After
+    public void tearDown() {
+        if (scheduler != null) {
+            scheduler.stop();
+        }
+        if (link != null) {
+            link.stop();
+        }
+        if (rover != null) {
+            rover.stop();
+        }
+    }
+
+    private void connect(SimulatedRover.LinkConditions conditions, int capacity) throws Exception {
+        LoopbackTransport[] pair = LoopbackTransport.createPair(capacity);
+        rover = new SimulatedRover(pair[1], conditions);
+        rover.start();
+        SerialLinkTest.RecordingListener listener = new SerialLinkTest.RecordingListener() {
+            @Override
+            public void onFrame(byte[] frame, int length) {
+                lastTelemetry = new String(frame, 0, length);
+                lastTelemetryNanos.set(System.nanoTime());
+                telemetry.incrementAndGet();
+            }
+        };
+        link = new SerialLink(listener);
+        link.setCommandFormat(CommandCodec.FORMAT_BINARY);
+        link.connect(pair[0]);
+        listener.awaitState(SerialLink.STATE_CONNECTED);
+    }
+
+    /**
+     * Publish a sweep of commands at the given rate for the given time.
+     */
+    private void drive(int rate, long millis) throws InterruptedException {
+        final AtomicLong n = new AtomicLong();
+        scheduler = new CommandScheduler(rate, new CommandScheduler.TickListener() {
+            @Override
+            public void onTick(long lateNanos) {
+                int value = (int) (n.incrementAndGet() % 16) * 16;
+                link.publishDrive(value, -value);
+            }
+        });
+        scheduler.start();
+        Thread.sleep(millis);
+        scheduler.stop();
+    }
+
+    /**
+     * Publish a sweep of commands at the rate the link's AdaptiveRate suggests.
+     *
+     * @return the final rate.
+     */
+    private int driveAdaptive(long millis) throws InterruptedException {
+        final AtomicLong n = new AtomicLong();
+        final AdaptiveRate adaptive = link.getAdaptiveRate();
+        scheduler = new CommandScheduler(adaptive.getRate(), new CommandScheduler.TickListener() {
+            @Override
+            public void onTick(long lateNanos) {
+                scheduler.setRate(adaptive.update(System.nanoTime()));
+                int value = (int) (n.incrementAndGet() % 16) * 16;
+                link.publishDrive(value, -value);
+            }
+        });
+        scheduler.start();
+        Thread.sleep(millis);
+        scheduler.stop();
+        return adaptive.getRate();
+    }
+
+    /**
+     * Keep publishing the final command until the rover reports it, like a keepalive would.
+     *
+     * @return the time from the first publish until the telemetry for it was received.
+     */
+    private long settle(int left, int right) throws InterruptedException {
+        final String expected = CommandCodec.direction(left) + "," + CommandCodec.speed(left) + ","
+                + CommandCodec.direction(right) + "," + CommandCodec.speed(right);
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.SECONDS.toNanos(5);
+        while (!expected.equals(lastTelemetry) && System.nanoTime() < deadline) {
+            link.publishDrive(left, right);
+            Thread.sleep(20);
+        }
+        assertEquals(expected, lastTelemetry);
+        return lastTelemetryNanos.get() - start;
+    }
+
+    @Test
+    public void cleanLinkKeepsUpWith200Hz() throws Exception {
+        connect(new SimulatedRover.LinkConditions(), LoopbackTransport.DEFAULT_CAPACITY);
+        drive(200, 1000);
+        long settle = settle(123, -45);
+
+        assertTrue(rover.getCommandsReceived() >= 180);
+        assertEquals(0, rover.getInvalidFrames());
+        assertEquals(123, rover.getLeft());
+        assertEquals(-45, rover.getRight());
+        assertTrue(telemetry.get() >= 180);
+        /* Every command on the wire is matched by its telemetry */
+        LatencyHistogram roundTrip = link.getLatencyTracker().getHistogram(LatencyTracker.STAGE_ROUND_TRIP);
+        assertTrue(roundTrip.getCount() >= 180);
+        assertTrue(roundTrip.getPercentile(50) < TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(settle < TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    @Test
+    public void stalledLinkIsThrottledAndStaysFresh() throws Exception {
+        /* 200 bytes per second fits 20 binary frames, a full buffer blocks every write */
+        connect(new SimulatedRover.LinkConditions().bandwidth(200), 16);
+        drive(200, 1500);
+        long settle = settle(64, 64);
+
+        BackpressureMonitor backpressure = link.getBackpressure();
+        assertTrue(backpressure.getStalls() > 0);
+        /* Throttled to 10 Hz, rather than sending whenever the buffer has room */
+        assertTrue(rover.getCommandsReceived() <= 25);
+        /* Whatever gets through was published recently, not seconds ago */
+        assertTrue(backpressure.getCommandAges().getMax() < TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(settle < TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void adaptiveRateGrowsOnACleanLink() throws Exception {
+        connect(new SimulatedRover.LinkConditions(), LoopbackTransport.DEFAULT_CAPACITY);
+        int rate = driveAdaptive(2500);
+        long settle = settle(0, 0);
+
+        assertTrue(rate >= AdaptiveRate.DEFAULT_MIN_RATE + 3 * AdaptiveRate.STEP);
+        assertTrue(link.getLinkQuality().getLossRate() < AdaptiveRate.LOW_LOSS);
+        assertTrue(settle < TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    @Test
+    public void adaptiveRateStaysLowOnAStalledLink() throws Exception {
+        connect(new SimulatedRover.LinkConditions().bandwidth(200), 16);
+        link.getAdaptiveRate().reset(AdaptiveRate.DEFAULT_MAX_RATE);
+        int rate = driveAdaptive(2500);
+        long settle = settle(0, 0);
+
+        assertTrue(link.getLinkQuality().getStalls() > 0);
+        assertTrue(rate < AdaptiveRate.DEFAULT_MAX_RATE / 2);
+        assertTrue(settle < TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void slowLinkSendsLatestCommandsOnly() throws Exception {
+        /* 1000 bytes per second fits 100 binary frames, with 20 ms each way */
+        connect(new SimulatedRover.LinkConditions().bandwidth(1000).latency(20), 64);
+        drive(200, 1000);
+        long settle = settle(200, 200);
+
+        /* The link caps what gets through and stale commands are replaced, not queued */
+        assertTrue(rover.getCommandsReceived() < 150);
+        assertTrue(rover.getCommandsReceived() > 50);
+        assertTrue(link.getMailbox().getOverwritten() > 0);
+        /* A round trip is at least twice the latency, but not seconds of backlog */
+        assertTrue(settle >= TimeUnit.MILLISECONDS.toNanos(40));
+        assertTrue(settle < TimeUnit.MILLISECONDS.toNanos(500));
+        LatencyHistogram roundTrip = link.getLatencyTracker().getHistogram(LatencyTracker.STAGE_ROUND_TRIP);
+        assertTrue(roundTrip.getPercentile(50) >= TimeUnit.MILLISECONDS.toNanos(40));
+    }
+
+    @Test
+    public void corruptedFramesAreNeverApplied() throws Exception {
+        SimulatedRover.LinkConditions conditions = new SimulatedRover.LinkConditions().corruption(0.01);
+        connect(conditions, LoopbackTransport.DEFAULT_CAPACITY);
+        final AtomicLong wrong = new AtomicLong();
+        rover.setCommandListener(new SimulatedRover.CommandListener() {
+            @Override
+            public void onCommand(int sequence, int left, int right) {
+                /* Only multiples of 16 with opposite signs are ever published */
+                if (left % 16 != 0 || right != -left) {
+                    wrong.incrementAndGet();
+                }
+            }
+        });
+        drive(200, 1000);
+        long settle = settle(0, 0);
+
+        assertTrue(rover.getInvalidFrames() > 0);
+        assertEquals(0, wrong.get());
+        /* A corrupted command is made good by the next one */
+        assertTrue(settle < TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    @Test
+    public void roverModelsDifferentialDrive() throws Exception {
+        connect(new SimulatedRover.LinkConditions(), LoopbackTransport.DEFAULT_CAPACITY);
+        settle(255, 255);
+        Thread.sleep(200);
+        /* Straight ahead at full speed */
+        assertEquals(0, rover.getHeading(), 1e-9);
+        assertTrue(rover.getX() > 0.05);
+        assertEquals(0, rover.getY(), 1e-9);
+
+        settle(-255, 255);
+        double heading = rover.getHeading();
+        Thread.sleep(100);
+        /* Turning on the spot, anticlockwise */
+        assertTrue(rover.getHeading() > heading);
+    }
+}
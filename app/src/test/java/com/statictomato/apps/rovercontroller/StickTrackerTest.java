@@ -0,0 +1,83 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StickTrackerTest {
+
+    private static final float DELTA = 1e-4f;
+
+    /* Square of 400: inner radius 120, outer 200, hat 80 */
+    private final StickTracker stick = new StickTracker();
+
+    @Before
+    public void setUp() {
+        stick.setGeometry(200, 200, 400);
+    }
+
+    @Test
+    public void onlyTheHatCanBeGrabbed() {
+        assertFalse(stick.grab(1, 290, 200));
+        assertFalse(stick.isActive());
+        assertTrue(stick.grab(1, 250, 200));
+        assertEquals(1, stick.getPointerId());
+        /* Held by one pointer at a time */
+        assertFalse(stick.grab(2, 200, 200));
+    }
+
+    @Test
+    public void hatFollowsTheDragRelativeToTheGrab() {
+        stick.grab(0, 220, 200);
+        stick.drag(220, 140, 0);
+        assertEquals(0, stick.getPercentX(), DELTA);
+        assertEquals(-0.5f, stick.getPercentY(), DELTA);
+    }
+
+    @Test
+    public void hatStaysWithinTheInnerRadius() {
+        stick.grab(0, 200, 200);
+        stick.drag(200, 500, 0);
+        assertEquals(1, stick.getPercentY(), DELTA);
+        assertEquals(320, stick.getHatCenterY(), DELTA);
+    }
+
+    @Test
+    public void dragBeyondTheOuterRadiusIsBound() {
+        stick.grab(0, 200, 200);
+        /* The last touch is bound to the outer radius, 400, so coming back moves the hat at once */
+        stick.drag(200, 700, 0);
+        stick.drag(200, 380, 0);
+        assertEquals(1 - 20f / 120, stick.getPercentY(), DELTA);
+    }
+
+    @Test
+    public void releaseRecentersOnlyForTheHoldingPointer() {
+        stick.grab(3, 200, 200);
+        stick.drag(260, 200, 0);
+        assertFalse(stick.release(4));
+        assertEquals(0.5f, stick.getPercentX(), DELTA);
+        assertTrue(stick.release(3));
+        assertFalse(stick.isActive());
+        assertEquals(0, stick.getPercentX(), DELTA);
+        assertEquals(200, stick.getHatCenterX(), DELTA);
+    }
+
+    @Test
+    public void newGeometryRecenters() {
+        stick.grab(0, 200, 200);
+        stick.drag(260, 260, 0);
+        stick.setGeometry(100, 100, 200);
+        assertFalse(stick.isActive());
+        assertEquals(100, stick.getHatCenterX(), DELTA);
+        assertEquals(0, stick.getPercentY(), DELTA);
+    }
+
+    @Test
+    public void unsizedStickReportsCenter() {
+        StickTracker unsized = new StickTracker();
+        assertEquals(0, unsized.getPercentX(), DELTA);
+        assertEquals(0, unsized.getPercentY(), DELTA);
+    }
+}
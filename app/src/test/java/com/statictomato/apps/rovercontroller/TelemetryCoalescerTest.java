@@ -0,0 +1,75 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class TelemetryCoalescerTest {
+
+    private final TelemetryCoalescer coalescer = new TelemetryCoalescer();
+
+    @Test
+    public void onlyTheFirstFrameSchedulesARender() {
+        assertTrue(coalescer.offer(1, 2));
+        assertFalse(coalescer.offer(3, 4));
+        assertFalse(coalescer.offer(5, 6));
+
+        long values = coalescer.take();
+        assertEquals(5, TelemetryCoalescer.left(values));
+        assertEquals(6, TelemetryCoalescer.right(values));
+        assertFalse(coalescer.isPending());
+
+        assertTrue(coalescer.offer(7, 8));
+        assertEquals(4, coalescer.getReceived());
+        assertEquals(1, coalescer.getRendered());
+    }
+
+    @Test
+    public void cancelledRenderIsScheduledAgain() {
+        assertTrue(coalescer.offer(1, 2));
+        coalescer.cancel();
+        assertFalse(coalescer.isPending());
+        assertTrue(coalescer.offer(3, 4));
+        assertEquals(0, coalescer.getRendered());
+    }
+
+    @Test
+    public void signedValuesArePacked() {
+        int[] values = {0, 1, -1, 255, -255, 99999, -99999, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (int left : values) {
+            for (int right : values) {
+                long packed = TelemetryCoalescer.pack(left, right);
+                assertEquals(left, TelemetryCoalescer.left(packed));
+                assertEquals(right, TelemetryCoalescer.right(packed));
+            }
+        }
+    }
+
+    @Test
+    public void rendererAlwaysSeesAConsistentPair() throws InterruptedException {
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 200000; ++i) {
+                    coalescer.offer(i, -i);
+                }
+                done.set(true);
+            }
+        };
+        reader.start();
+        while (!done.get()) {
+            long values = coalescer.take();
+            assertEquals(-TelemetryCoalescer.left(values), TelemetryCoalescer.right(values));
+        }
+        reader.join();
+        assertEquals(200000, coalescer.getReceived());
+        assertTrue(coalescer.getRendered() > 0);
+
+        StringBuilder out = new StringBuilder();
+        coalescer.export(out);
+        assertTrue(out.toString().startsWith("received=200000 rendered="));
+    }
+}
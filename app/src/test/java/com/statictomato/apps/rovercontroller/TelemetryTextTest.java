@@ -0,0 +1,42 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class TelemetryTextTest {
+
+    private final char[] buffer = new char[TelemetryText.MAX_LENGTH];
+
+    private String format(int wheel) {
+        return new String(buffer, 0, TelemetryText.format(wheel, buffer));
+    }
+
+    @Test
+    public void matchesTheFormerStringFormat() {
+        for (int wheel = -300; wheel <= 300; ++wheel) {
+            String expected = "Direction: " + CommandCodec.direction(wheel) + ", Speed: "
+                    + String.format(Locale.ENGLISH, "%03d", CommandCodec.speed(wheel));
+            assertEquals(expected, format(wheel));
+        }
+    }
+
+    @Test
+    public void stoppedWheelShowsNoDirection() {
+        CommandCodec.DriveCommand command = new CommandCodec.DriveCommand();
+        byte[] frame = "1,0,0,0".getBytes();
+        assertTrue(CommandCodec.decodeDrive(frame, frame.length, command));
+        /* Reverse at speed 0 renders like forward at speed 0 */
+        assertEquals("Direction: 0, Speed: 000", format(command.left));
+        assertEquals(format(command.right), format(command.left));
+    }
+
+    @Test
+    public void longSpeedsFit() {
+        assertEquals("Direction: 1, Speed: 32768", format(Short.MIN_VALUE));
+        assertEquals("Direction: 0, Speed: 1000", format(1000));
+        assertEquals("Direction: 0, Speed: 000", format(0));
+    }
+}
@@ -0,0 +1,70 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TouchFilterTest {
+
+    private static float lagAtEnd(TouchFilter filter, TouchTrace trace) {
+        for (int i = 0; i < trace.size(); ++i) {
+            filter.add(trace.x[i], trace.y[i], trace.nanos[i]);
+        }
+        return filter.getY() - trace.y[trace.size() - 1];
+    }
+
+    @Test
+    public void predictionCutsTheLag() {
+        final float smoothed = lagAtEnd(new TouchFilter(), TouchTrace.SWIPE);
+        final float predicted = lagAtEnd(new TouchFilter(TouchFilter.DEFAULT_MIN_CUTOFF,
+                TouchFilter.DEFAULT_BETA, 16), TouchTrace.SWIPE);
+        assertTrue(smoothed > 0);
+        assertTrue(Math.abs(predicted) < smoothed / 2);
+    }
+
+    @Test
+    public void predictionStaysPutWhenHeldStill() {
+        TouchFilter filter = new TouchFilter(TouchFilter.DEFAULT_MIN_CUTOFF, TouchFilter.DEFAULT_BETA, 16);
+        TouchTrace trace = TouchTrace.HOLD;
+        for (int i = 0; i < trace.size(); ++i) {
+            filter.add(trace.x[i], trace.y[i], trace.nanos[i]);
+            if (i >= 8) {
+                assertEquals(300, filter.getX(), 2);
+                assertEquals(400, filter.getY(), 2);
+            }
+        }
+    }
+
+    @Test
+    public void stickUsesEverySampleOfTheTrace() {
+        /* Raw, replaying the history ends where the latest sample alone would */
+        StickTracker batched = new StickTracker();
+        StickTracker latest = new StickTracker();
+        batched.setGeometry(300, 400, 400);
+        latest.setGeometry(300, 400, 400);
+        TouchTrace trace = TouchTrace.SWIPE;
+        assertTrue(batched.grab(0, trace.x[0], trace.y[0]));
+        assertTrue(latest.grab(0, trace.x[0], trace.y[0]));
+        for (int i = 1; i < 12; ++i) {
+            batched.drag(trace.x[i], trace.y[i], trace.nanos[i]);
+        }
+        latest.drag(trace.x[11], trace.y[11], trace.nanos[11]);
+        assertEquals(latest.getPercentY(), batched.getPercentY(), 1e-4f);
+
+        /* Smoothed, the hat follows the filtered path and is reset on the next grab */
+        StickTracker smoothed = new StickTracker();
+        smoothed.setGeometry(300, 400, 400);
+        smoothed.setFilter(new TouchFilter());
+        smoothed.grab(0, trace.x[0], trace.y[0]);
+        for (int i = 1; i < 12; ++i) {
+            smoothed.drag(trace.x[i], trace.y[i], trace.nanos[i]);
+        }
+        assertTrue(smoothed.getPercentY() < 0);
+        assertTrue(smoothed.getPercentY() > batched.getPercentY());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void predictionMustNotBeNegative() {
+        new TouchFilter(1.0, 0.01, -1);
+    }
+}
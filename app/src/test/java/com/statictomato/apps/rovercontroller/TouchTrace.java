@@ -0,0 +1,66 @@
+package com.statictomato.apps.rovercontroller;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A touch trace, one sample per line as "millis x y" in view pixels, the way
+ * MotionEvent samples are logged with their event time. Replays it through
+ * filters and sticks in the tests.
+ */
+class TouchTrace {
+
+    /* A finger held on the hat, jittering by a pixel or two, at 120 Hz */
+    static final TouchTrace HOLD = parse(
+            "1000 299.3 398.6", "1008 298.3 400.1", "1016 300.3 401.6", "1024 298.1 399.7",
+            "1032 299.0 400.2", "1040 301.3 398.5", "1048 300.5 400.3", "1056 300.3 399.6",
+            "1064 298.2 401.4", "1072 299.7 400.2", "1080 300.2 400.7", "1088 300.3 400.6",
+            "1096 298.4 400.8", "1104 300.5 400.0", "1113 301.1 399.9", "1122 299.4 399.0",
+            "1130 300.8 399.0", "1138 300.1 401.5", "1147 299.2 401.9", "1155 300.0 398.7",
+            "1163 298.6 400.0", "1171 301.8 398.3", "1179 299.4 399.4", "1188 300.3 399.8",
+            "1196 301.8 399.9", "1204 298.2 400.8", "1213 299.1 399.5", "1221 298.1 399.8",
+            "1229 300.4 400.0", "1237 301.1 398.5", "1245 299.6 401.7", "1254 298.3 399.8",
+            "1262 301.5 401.3", "1270 300.8 401.9", "1279 301.8 398.6", "1287 298.6 400.6",
+            "1295 299.9 400.4", "1303 299.1 398.6", "1311 300.4 399.3", "1319 300.8 400.1",
+            "1327 299.8 401.5", "1336 299.6 399.6", "1345 300.5 398.2", "1353 301.9 399.8",
+            "1361 299.4 398.2", "1369 300.3 400.1", "1377 300.5 398.3", "1385 300.5 398.6");
+
+    /* A swipe up at 600 pixels per second, at 120 Hz */
+    static final TouchTrace SWIPE = parse(
+            "2000 300.9 400.2", "2009 299.2 395.3", "2018 300.0 388.8", "2026 299.2 384.1",
+            "2034 300.0 380.0", "2042 299.4 375.7", "2050 299.3 370.1", "2058 300.5 364.8",
+            "2066 300.4 359.9", "2074 300.8 355.3", "2082 300.1 351.4", "2090 300.3 346.2",
+            "2098 300.6 341.8", "2106 299.4 336.4", "2114 301.0 332.2", "2123 299.5 326.6",
+            "2131 299.9 322.3", "2139 300.9 316.3", "2147 299.2 311.7", "2155 299.4 307.2",
+            "2163 300.0 302.5", "2171 300.7 296.6", "2180 300.6 292.5", "2189 300.8 286.5",
+            "2197 299.2 282.7", "2206 299.9 276.9", "2214 300.4 270.9", "2222 299.1 267.0",
+            "2231 300.6 260.7", "2240 300.3 255.7", "2248 299.0 251.8", "2256 300.1 247.3",
+            "2265 301.0 240.4", "2273 299.1 235.6", "2281 300.5 231.1", "2290 300.7 225.1",
+            "2298 300.8 221.5", "2307 300.7 216.6", "2315 300.1 211.0", "2323 300.7 206.8",
+            "2331 300.6 200.7", "2339 299.9 197.1", "2347 299.7 191.8", "2356 300.6 185.6",
+            "2364 299.5 181.2", "2372 300.0 176.9", "2380 299.9 172.2", "2388 300.4 167.1");
+
+    final long[] nanos;
+    final float[] x;
+    final float[] y;
+
+    private TouchTrace(int size) {
+        nanos = new long[size];
+        x = new float[size];
+        y = new float[size];
+    }
+
+    static TouchTrace parse(String... lines) {
+        TouchTrace trace = new TouchTrace(lines.length);
+        for (int i = 0; i < lines.length; ++i) {
+            String[] fields = lines[i].trim().split("\\s+");
+            trace.nanos[i] = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(fields[0]));
+            trace.x[i] = Float.parseFloat(fields[1]);
+            trace.y[i] = Float.parseFloat(fields[2]);
+        }
+        return trace;
+    }
+
+    int size() {
+        return nanos.length;
+    }
+}
@@ -0,0 +1,102 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting the telemetry stream into frames, as the ConnectedThread did with
+ * a read() per byte and a String per frame, and as the FrameDecoder does now.
+ * Scores are per frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameParsingBenchmark {
+
+    private static final int FRAMES = 100;
+
+    private byte[] stream;
+    private final byte[] buffer = new byte[512];
+    private Blackhole blackhole;
+    private final CommandCodec.DriveCommand telemetry = new CommandCodec.DriveCommand();
+    private final FrameDecoder decoder = new FrameDecoder(CommandCodec.START, CommandCodec.END,
+            new FrameDecoder.FrameListener() {
+                @Override
+                public void onFrame(byte[] frame, int length) {
+                    blackhole.consume(length);
+                }
+            });
+    private final FrameDecoder telemetryDecoder = new FrameDecoder(CommandCodec.START, CommandCodec.END,
+            new FrameDecoder.FrameListener() {
+                @Override
+                public void onFrame(byte[] frame, int length) {
+                    CommandCodec.decodeDrive(frame, length, telemetry);
+                    blackhole.consume(telemetry.left);
+                }
+            });
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < FRAMES; ++i) {
+            int speed = i * 2 + 50;
+            s.append(CommandCodec.START).append(i & 1).append(',').append(speed).append(',')
+                    .append(~i & 1).append(',').append(speed / 2).append(CommandCodec.END);
+        }
+        stream = s.toString().getBytes();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void readPerByte(Blackhole blackhole) throws IOException {
+        final InputStream inStream = new ByteArrayInputStream(stream);
+        int i;
+        byte c;
+        /* The ConnectedThread before the FrameDecoder */
+        for (int frame = 0; frame < FRAMES; ++frame) {
+            if ((byte) inStream.read() == CommandCodec.START) {
+                c = 0;
+                i = 0;
+                while (c != CommandCodec.END && i < 512) {
+                    c = (byte) inStream.read();
+                    buffer[i] = c;
+                    ++i;
+                }
+                if (c == CommandCodec.END) {
+                    blackhole.consume(new String(buffer, 0, i - 1));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void frameDecoder() {
+        decoder.feed(stream, 0, stream.length);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void frameDecoderWithTelemetry() {
+        telemetryDecoder.feed(stream, 0, stream.length);
+    }
+}
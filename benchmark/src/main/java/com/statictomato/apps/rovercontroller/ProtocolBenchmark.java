@@ -0,0 +1,68 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a drive command frame, as sendData() did by concatenating strings
+ * and as the CommandCodec does now.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolBenchmark {
+
+    private final CommandCodec legacy = new CommandCodec();
+    private final CommandCodec binary = new CommandCodec();
+    private int n;
+
+    @Setup
+    public void setUp() {
+        legacy.setFormat(CommandCodec.FORMAT_LEGACY);
+        binary.setFormat(CommandCodec.FORMAT_BINARY);
+    }
+
+    /* Wheel values sweeping the full range, so nothing is constant folded */
+    private int nextLeft() {
+        n = (n + 37) & 511;
+        return n - 255;
+    }
+
+    @Benchmark
+    public byte[] stringConcatenation() {
+        final int left = nextLeft();
+        final int right = -left;
+        /* sendData() and write(String) before the CommandCodec */
+        String data = "";
+        data += CommandCodec.direction(left) + "," + CommandCodec.speed(left)
+                + "," + CommandCodec.direction(right) + "," + CommandCodec.speed(right);
+        return (CommandCodec.START + data + CommandCodec.END).getBytes();
+    }
+
+    @Benchmark
+    public byte[] encodeLegacy() {
+        final int left = nextLeft();
+        legacy.encodeDrive(left, -left);
+        return legacy.getBuffer();
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        final int left = nextLeft();
+        binary.encodeDrive(left, -left);
+        return binary.getBuffer();
+    }
+}
@@ -0,0 +1,115 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The touch path: the distance checks of the stick view's onTouchEvent(), a
+ * StickTracker following a finger, and mixing the stick position into the
+ * DriveState in MainActivity, as before and through the DriveMixer tables.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StickBenchmark {
+
+    private final float centerX = 240;
+    private final float centerY = 240;
+    private final float hatRadius = 96;
+    private final DriveState driveState = new DriveState();
+    private final StickTracker stick = new StickTracker();
+    private final DriveMixer tankMixer = new DriveMixer(
+            new DriveMixer.Profile(DriveMixer.MODE_TANK, 0.05f, 0.5f, 1, 0.95f));
+    private final DriveMixer arcadeMixer = new DriveMixer(
+            new DriveMixer.Profile(DriveMixer.MODE_ARCADE, 0.05f, 0.5f, 1, 0.95f));
+    private long eventNanos;
+    private float touchX = 200;
+    private float touchY = 300;
+
+    private void nextTouch() {
+        touchX = touchX > 480 ? 0 : touchX + 1.5f;
+        touchY = touchY < 0 ? 480 : touchY - 2.5f;
+    }
+
+    @Benchmark
+    public boolean sqrtPow() {
+        nextTouch();
+        /* The former onTouchEvent() of the stick view */
+        final float dTouch = (float) Math.sqrt(Math.pow(touchX - centerX, 2) + Math.pow(touchY - centerY, 2));
+        return dTouch < hatRadius;
+    }
+
+    @Benchmark
+    public boolean sqrtMultiply() {
+        nextTouch();
+        final float dx = touchX - centerX;
+        final float dy = touchY - centerY;
+        return (float) Math.sqrt(dx * dx + dy * dy) < hatRadius;
+    }
+
+    @Benchmark
+    public boolean squaredDistance() {
+        nextTouch();
+        final float dx = touchX - centerX;
+        final float dy = touchY - centerY;
+        return dx * dx + dy * dy < hatRadius * hatRadius;
+    }
+
+    @Setup
+    public void setUp() {
+        stick.setGeometry(centerX, centerY, 480);
+    }
+
+    @Benchmark
+    public float trackerDrag() {
+        nextTouch();
+        /* One move sample, the finger circling in and out of the outer radius */
+        if (!stick.isActive()) {
+            stick.grab(0, centerX, centerY);
+        }
+        eventNanos += 8000000;
+        stick.drag(touchX, touchY, eventNanos);
+        return stick.getPercentX() + stick.getPercentY();
+    }
+
+    @Benchmark
+    public long mixToDriveState() {
+        nextTouch();
+        /* The former MainActivity.onControlStickMoved() for both sticks */
+        final float percentY = (touchY - centerY) / hatRadius;
+        driveState.setLeft(-(int) (255 * Math.max(-1, Math.min(1, percentY))));
+        driveState.setRight((int) (255 * Math.max(-1, Math.min(1, percentY))));
+        return driveState.get();
+    }
+
+    @Benchmark
+    public long mixerTank() {
+        nextTouch();
+        /* With deadzone, expo and trim, which the former mixing had none of */
+        final float percentY = (touchY - centerY) / hatRadius;
+        final int wheels = tankMixer.mix(0, percentY, 0, -percentY);
+        driveState.set(DriveMixer.left(wheels), DriveMixer.right(wheels));
+        return driveState.get();
+    }
+
+    @Benchmark
+    public long mixerArcade() {
+        nextTouch();
+        final int wheels = arcadeMixer.mix((touchX - centerX) / hatRadius, (touchY - centerY) / hatRadius, 0, 0);
+        driveState.set(DriveMixer.left(wheels), DriveMixer.right(wheels));
+        return driveState.get();
+    }
+}
@@ -0,0 +1,51 @@
+package com.statictomato.apps.rovercontroller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning a telemetry frame into the two info texts, as MainActivity.writeToScreen()
+ * did with split() and String.format(), and as it does now with TelemetryText.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TelemetryDisplayBenchmark {
+
+    private final String text = "0,123,1,45";
+    private final byte[] frame = text.getBytes();
+    private final CommandCodec.DriveCommand telemetry = new CommandCodec.DriveCommand();
+    private final char[] left = new char[TelemetryText.MAX_LENGTH];
+    private final char[] right = new char[TelemetryText.MAX_LENGTH];
+
+    @Benchmark
+    public void splitAndFormat(Blackhole blackhole) {
+        /* The former MainActivity.writeToScreen() */
+        String[] s = text.split(",");
+        blackhole.consume("Direction: " + s[0] + ", Speed: " + String.format(Locale.ENGLISH, "%03d", Integer.parseInt(s[1])));
+        blackhole.consume("Direction: " + s[2] + ", Speed: " + String.format(Locale.ENGLISH, "%03d", Integer.parseInt(s[3])));
+    }
+
+    @Benchmark
+    public void decodeAndFormat(Blackhole blackhole) {
+        CommandCodec.decodeDrive(frame, frame.length, telemetry);
+        blackhole.consume(TelemetryText.format(telemetry.left, left));
+        blackhole.consume(TelemetryText.format(telemetry.right, right));
+        blackhole.consume(left);
+        blackhole.consume(right);
+    }
+}